@@ -1,259 +1,5501 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.swing.*;
 import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+import javax.swing.table.TableStringConverter;
 import java.awt.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 public class SmartMedicineReminderApp {
     
         static class Medicine implements Serializable {
-            private static final long serialVersionUID = 1L;
+            private static final long serialVersionUID = 2L;
+
+            enum Status {
+                PENDING("Pending"), TAKEN("Taken"), MISSED("Missed");
+
+                private static final Status[] VALUES = values();
+
+                final String label;
+
+                Status(String label) {
+                    this.label = label;
+                }
+
+                static Status parse(String label) {
+                    for (Status status : VALUES) {
+                        if (status.label.equals(label)) return status;
+                    }
+                    return null;
+                }
+            }
+
+            private static final class Unpacked implements Serializable {
+                private static final long serialVersionUID = 1L;
+
+                final String dosage;
+                final String timing;
+                final String date;
+                final boolean rawWhen;
 
-            private String name;
-            private String dosage;
-            private String strength;
-            private String timing;
-            private boolean taken;
-            private String status;
-            private String date;
+                Unpacked(String dosage, String timing, String date, boolean rawWhen) {
+                    this.dosage = dosage;
+                    this.timing = timing;
+                    this.date = date;
+                    this.rawWhen = rawWhen;
+                }
+            }
+
+            private static final int NO_DOSAGE = Integer.MIN_VALUE;
+            private static final int RAW_DOSAGE = Integer.MIN_VALUE + 1;
+            private static final int HAS_DATE = 1, HAS_TIME = 2, PAD_DAY = 4, PAD_MONTH = 8, PAD_HOUR = 16;
+            private static final int WHEN_FLAGS = 6;
+            private static final long RAW_WHEN = Long.MIN_VALUE;
+            private static final int TAKEN_BIT = 4;
+            private static final StringPool POOL = new StringPool(Integer.getInteger("smr.internPool.maxSize", 1 << 20));
+
+            private final String name;
+            private final String strength;
+            private final int dosage;
+            private final long when;
+            private volatile byte state;
+            private volatile String otherStatus;
+            private final Unpacked raw;
+            private volatile Recurrence recurrence;
+            private volatile NavigableMap<Long, Boolean> exceptions;
+            private transient volatile int version;
+
+            private static final DetailsCache<Medicine> DETAILS = new DetailsCache<>(
+                    Integer.getInteger("smr.detailsCache.size", 10_000), Medicine::renderDetails, m -> m.version);
 
         public Medicine(String name, String dosage, String strength, String timing, String date) {
-            this.name = name;
-            this.dosage = dosage;
-            this.strength = strength;
-            this.timing = timing;
-            this.date = date;
-            this.taken = false;
-            this.status = "Pending";
+            this.name = POOL.intern(name);
+            this.strength = POOL.intern(strength);
+            int packedDosage = packDosage(dosage);
+            long packedWhen = packWhen(timing, date);
+            this.dosage = packedDosage;
+            this.when = packedWhen;
+            boolean rawWhen = packedWhen == RAW_WHEN;
+            this.raw = packedDosage == RAW_DOSAGE || rawWhen ? new Unpacked(packedDosage == RAW_DOSAGE ? dosage : null,
+                    rawWhen ? timing : null, rawWhen ? date : null, rawWhen) : null;
+            this.state = (byte) Status.PENDING.ordinal();
+        }
+
+        private Medicine(Medicine source) {
+            this.name = source.name;
+            this.strength = source.strength;
+            this.dosage = source.dosage;
+            this.when = source.when;
+            this.raw = source.raw;
+            this.state = source.state;
+            this.otherStatus = source.otherStatus;
+            this.recurrence = source.recurrence;
+            NavigableMap<Long, Boolean> sourceExceptions = source.exceptions;
+            this.exceptions = sourceExceptions != null ? new ConcurrentSkipListMap<>(sourceExceptions) : null;
+        }
+
+        Medicine copy() {
+            return new Medicine(this);
+        }
+
+        private static int packDosage(String dosage) {
+            if (dosage == null) return NO_DOSAGE;
+            int length = dosage.length();
+            if (length == 0 || length > 9 || (dosage.charAt(0) == '0' && length > 1)) return RAW_DOSAGE;
+            int value = 0;
+            for (int i = 0; i < length; i++) {
+                char c = dosage.charAt(i);
+                if (c < '0' || c > '9') return RAW_DOSAGE;
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        private static long packWhen(String timing, String date) {
+            long flags = 0;
+            long minute = 0;
+            if (date != null) {
+                int slash1 = date.indexOf('/');
+                int slash2 = date.indexOf('/', slash1 + 1);
+                if (slash1 < 1 || slash1 > 2 || slash2 - slash1 < 2 || slash2 - slash1 > 3
+                        || date.length() - slash2 != 5) return RAW_WHEN;
+                int day = number(date, 0, slash1);
+                int month = number(date, slash1 + 1, slash2);
+                int year = number(date, slash2 + 1, date.length());
+                if (day < 1 || month < 1 || month > 12 || year < 1) return RAW_WHEN;
+                LocalDate first = LocalDate.of(year, month, 1);
+                if (day > first.lengthOfMonth()) return RAW_WHEN;
+                minute = (first.toEpochDay() + day - 1) * 1440L;
+                flags |= HAS_DATE;
+                if (slash1 == 2 && day < 10) flags |= PAD_DAY;
+                if (slash2 - slash1 == 3 && month < 10) flags |= PAD_MONTH;
+            }
+            if (timing != null) {
+                int colon = timing.indexOf(':');
+                if (colon < 1 || colon > 2 || timing.length() - colon != 3) return RAW_WHEN;
+                int hour = number(timing, 0, colon);
+                int minuteOfHour = number(timing, colon + 1, timing.length());
+                if (hour < 0 || hour > 23 || minuteOfHour < 0 || minuteOfHour > 59) return RAW_WHEN;
+                minute += hour * 60 + minuteOfHour;
+                flags |= HAS_TIME;
+                if (colon == 2 && hour < 10) flags |= PAD_HOUR;
+            }
+            return minute << WHEN_FLAGS | flags;
+        }
+
+        private static int number(String text, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') return -1;
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        private static void appendTwo(StringBuilder sb, int value, boolean pad) {
+            if (pad && value < 10) sb.append('0');
+            sb.append(value);
         }
 
         public String getName() {
             return name;
         }
 
-        public String getDosage() {
-            return dosage;
+        public String getDosage() {
+            if (dosage == NO_DOSAGE) return null;
+            return dosage == RAW_DOSAGE ? raw.dosage : Integer.toString(dosage);
+        }
+
+        public String getStrength() {
+            return strength;
+        }
+
+        public String getTiming() {
+            if (raw != null && raw.rawWhen) return raw.timing;
+            return (when & HAS_TIME) == 0 ? null : appendTiming(new StringBuilder(5), null).toString();
+        }
+
+        public String getDate() {
+            if (raw != null && raw.rawWhen) return raw.date;
+            return (when & HAS_DATE) == 0 ? null : appendDate(new StringBuilder(10), null).toString();
+        }
+
+        private StringBuilder appendDosage(StringBuilder sb, String missing) {
+            if (dosage == NO_DOSAGE) return sb.append(missing);
+            return dosage == RAW_DOSAGE ? sb.append(raw.dosage) : sb.append(dosage);
+        }
+
+        private StringBuilder appendTiming(StringBuilder sb, String missing) {
+            if (raw != null && raw.rawWhen) return sb.append(raw.timing != null ? raw.timing : missing);
+            if ((when & HAS_TIME) == 0) return sb.append(missing);
+            int minuteOfDay = (int) Math.floorMod(when >> WHEN_FLAGS, 1440L);
+            appendTwo(sb, minuteOfDay / 60, (when & PAD_HOUR) != 0);
+            sb.append(':');
+            appendTwo(sb, minuteOfDay % 60, true);
+            return sb;
+        }
+
+        private StringBuilder appendDate(StringBuilder sb, String missing) {
+            if (raw != null && raw.rawWhen) return sb.append(raw.date != null ? raw.date : missing);
+            if ((when & HAS_DATE) == 0) return sb.append(missing);
+            LocalDate day = LocalDate.ofEpochDay(epochDay());
+            appendTwo(sb, day.getDayOfMonth(), (when & PAD_DAY) != 0);
+            sb.append('/');
+            appendTwo(sb, day.getMonthValue(), (when & PAD_MONTH) != 0);
+            return sb.append('/').append(day.getYear());
+        }
+
+        int epochDay() {
+            if (raw != null && raw.rawWhen) return VitalsStore.parseDay(raw.date);
+            if ((when & HAS_DATE) == 0) return VitalsStore.NO_DAY;
+            return (int) Math.floorDiv(when >> WHEN_FLAGS, 1440L);
+        }
+
+        long dueAt() {
+            if (raw != null && raw.rawWhen) return ReminderScheduler.dueAt(raw.date, raw.timing);
+            if ((when & (HAS_DATE | HAS_TIME)) != (HAS_DATE | HAS_TIME)) return -1;
+            return LocalDateTime.ofEpochSecond((when >> WHEN_FLAGS) * 60, 0, ZoneOffset.UTC)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        public boolean isTaken() {
+            return (state & TAKEN_BIT) != 0;
+        }
+
+        public void setTaken(boolean taken) {
+            this.otherStatus = null;
+            this.state = (byte) ((taken ? Status.TAKEN : Status.PENDING).ordinal() | (taken ? TAKEN_BIT : 0));
+            version++;
+        }
+
+        public String getStatus() {
+            String other = otherStatus;
+            return other != null ? other : Status.VALUES[state & 3].label;
+        }
+
+        Status status() {
+            return otherStatus != null ? null : Status.VALUES[state & 3];
+        }
+
+        void restoreState(boolean taken, String status) {
+            Status parsed = Status.parse(status);
+            this.otherStatus = parsed == null ? status : null;
+            this.state = (byte) ((parsed != null ? parsed : Status.PENDING).ordinal() | (taken ? TAKEN_BIT : 0));
+        }
+
+        public void setMissed() {
+            this.otherStatus = null;
+            this.state = (byte) Status.MISSED.ordinal();
+            version++;
+        }
+
+        public Recurrence getRecurrence() {
+            return recurrence;
+        }
+
+        public void setRecurrence(Recurrence recurrence) {
+            this.recurrence = recurrence;
+            version++;
+        }
+
+        public boolean isRecurring() {
+            return recurrence != null;
+        }
+
+        public long startAt() {
+            long dueAt = dueAt();
+            if (dueAt >= 0 || recurrence == null) return dueAt;
+            LocalDate day = toLocalDate(epochDay());
+            return day != null ? day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+        }
+
+        
+        public boolean isTakenAt(long occurrenceAt) {
+            if (recurrence == null) return isTaken();
+            Boolean outcome = exceptions != null ? exceptions.get(occurrenceAt / 60_000L) : null;
+            return outcome != null && outcome;
+        }
+
+        public String statusAt(long occurrenceAt) {
+            if (recurrence == null) return getStatus();
+            Boolean outcome = exceptions != null ? exceptions.get(occurrenceAt / 60_000L) : null;
+            return outcome == null ? "Pending" : outcome ? "Taken" : "Missed";
+        }
+
+        public boolean hasOutcomeAt(long occurrenceAt) {
+            if (recurrence == null) return isTaken() || status() == Status.MISSED;
+            return exceptions != null && exceptions.containsKey(occurrenceAt / 60_000L);
+        }
+
+        public void markOccurrence(long occurrenceAt, boolean taken) {
+            if (recurrence == null) {
+                if (taken) setTaken(true); else setMissed();
+                return;
+            }
+            if (exceptions == null) exceptions = new ConcurrentSkipListMap<>();
+            exceptions.put(occurrenceAt / 60_000L, taken);
+            version++;
+        }
+
+        
+        public long nextPendingOccurrence(long from) {
+            if (recurrence == null) {
+                long dueAt = startAt();
+                return dueAt >= 0 && !hasOutcomeAt(dueAt) ? dueAt : -1;
+            }
+            long start = startAt();
+            if (start < 0) return -1;
+            long occurrence = recurrence.next(start, from);
+            while (occurrence >= 0 && hasOutcomeAt(occurrence)) {
+                occurrence = recurrence.next(start, occurrence + 1);
+            }
+            return occurrence;
+        }
+
+        
+        public long nearestOccurrence(long now) {
+            if (recurrence == null) return startAt();
+            long start = startAt();
+            if (start < 0) return -1;
+            long previous = recurrence.previous(start, now);
+            long next = recurrence.next(start, now);
+            if (previous < 0) return next;
+            if (next < 0) return previous;
+            return now - previous <= next - now ? previous : next;
+        }
+
+        public String getDetails() {
+            return DETAILS.get(this);
+        }
+
+        String renderDetails() {
+            StringBuilder sb = new StringBuilder(64).append(name != null ? name : "No Name").append(" - ");
+            appendDosage(sb, "No Dosage").append(" - ").append(strength != null ? strength : "No Strength").append(" at ");
+            appendTiming(sb, "No Timing").append(" on ");
+            appendDate(sb, "No Date").append(" (").append(getStatus()).append(')');
+            Recurrence recurrence = this.recurrence;
+            if (recurrence != null) sb.append(", repeats ").append(recurrence);
+            return sb.toString();
+        }
+
+        
+        public String toFileString() {
+            StringBuilder sb = new StringBuilder(64).append(name).append(';');
+            appendDosage(sb, null).append(';').append(strength).append(';');
+            appendTiming(sb, null).append(';');
+            appendDate(sb, null).append(';').append(isTaken()).append(';').append(getStatus());
+            Recurrence recurrence = this.recurrence;
+            if (recurrence != null) sb.append(';').append(recurrence).append(';').append(encodeExceptions());
+            return sb.toString();
+        }
+
+        String encodeExceptions() {
+            if (exceptions == null || exceptions.isEmpty()) return "";
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<Long, Boolean> exception : exceptions.entrySet()) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(exception.getKey()).append(exception.getValue() ? 'T' : 'M');
+            }
+            return sb.toString();
+        }
+
+        void decodeExceptions(String encoded) {
+            if (encoded == null || encoded.isEmpty()) return;
+            for (String exception : encoded.split(",")) {
+                int last = exception.length() - 1;
+                if (last < 1) continue;
+                try {
+                    markOccurrence(Long.parseLong(exception.substring(0, last)) * 60_000L, exception.charAt(last) == 'T');
+                } catch (NumberFormatException e) {
+                    // Skip a damaged entry rather than dropping the whole medicine.
+                }
+            }
+        }
+
+        
+        public static Medicine fromFileString(String fileString) {
+            String[] parts = fileString.split(";", -1);
+            return fromFields(parts, parts.length);
+        }
+
+        static Medicine fromFields(String[] parts, int count) {
+            if (count < 7) return null;
+            Medicine medicine = new Medicine(
+                    emptyToNull(parts[0]),
+                    emptyToNull(parts[1]),
+                    emptyToNull(parts[2]),
+                    emptyToNull(parts[3]),
+                    emptyToNull(parts[4])
+            );
+            medicine.restoreState(Boolean.parseBoolean(parts[5]), parts[6]);
+            if (count > 7 && !parts[7].isEmpty()) {
+                medicine.recurrence = Recurrence.parse(parts[7]);
+                if (medicine.recurrence != null && count > 8) {
+                    medicine.decodeExceptions(parts[8]);
+                }
+            }
+            return medicine;
+        }
+    }
+
+    
+    static class DetailsCache<T> {
+        private static final int SEGMENTS = 16;
+
+        private static final class Key<T> extends WeakReference<T> {
+            final int hash;
+
+            Key(T item, ReferenceQueue<T> queue) {
+                super(item, queue);
+                this.hash = System.identityHashCode(item);
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return this == other;
+            }
+        }
+
+        
+        private static final class Lookup {
+            Object item;
+            int hash;
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof Key && ((Key<?>) other).get() == item;
+            }
+        }
+
+        private static final class Entry {
+            final Key<?> key;
+            int version;
+            String details;
+            boolean referenced;
+
+            Entry(Key<?> key, int version, String details) {
+                this.key = key;
+                this.version = version;
+                this.details = details;
+            }
+        }
+
+        
+        private static final class Segment<T> {
+            private final int capacity;
+            private final Map<Object, Entry> entries = new HashMap<>();
+            private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+            private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+            private final Lookup lookup = new Lookup();
+
+            Segment(int capacity) {
+                this.capacity = capacity;
+            }
+
+            synchronized String get(T item, int hash, int version) {
+                lookup.item = item;
+                lookup.hash = hash;
+                Entry entry = entries.get(lookup);
+                lookup.item = null;
+                if (entry == null || entry.version != version) return null;
+                entry.referenced = true;
+                return entry.details;
+            }
+
+            synchronized void put(T item, int hash, int version, String details) {
+                Reference<? extends T> cleared;
+                while ((cleared = collected.poll()) != null) {
+                    entries.remove(cleared);
+                }
+                lookup.item = item;
+                lookup.hash = hash;
+                Entry entry = entries.get(lookup);
+                lookup.item = null;
+                if (entry != null) {
+                    entry.version = version;
+                    entry.details = details;
+                    return;
+                }
+                Key<T> key = new Key<>(item, collected);
+                entry = new Entry(key, version, details);
+                entries.put(key, entry);
+                clock.addLast(entry);
+                while (clock.size() > capacity) {
+                    Entry candidate = clock.pollFirst();
+                    if (entries.get(candidate.key) != candidate) continue;
+                    if (candidate.referenced) {
+                        candidate.referenced = false;
+                        clock.addLast(candidate);
+                    } else {
+                        entries.remove(candidate.key);
+                    }
+                }
+            }
+
+            synchronized int size() {
+                return entries.size();
+            }
+        }
+
+        private final Function<T, String> renderer;
+        private final ToIntFunction<T> version;
+        private final List<Segment<T>> segments = new ArrayList<>(SEGMENTS);
+
+        
+        DetailsCache(int capacity, Function<T, String> renderer, ToIntFunction<T> version) {
+            this.renderer = renderer;
+            this.version = version;
+            int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments.add(new Segment<>(perSegment));
+            }
+        }
+
+        public String get(T item) {
+            int current = version.applyAsInt(item);
+            int hash = System.identityHashCode(item);
+            Segment<T> segment = segments.get((hash ^ (hash >>> 16)) & (SEGMENTS - 1));
+            String details = segment.get(item, hash, current);
+            if (details != null) return details;
+            details = renderer.apply(item);
+            segment.put(item, hash, current, details);
+            return details;
+        }
+
+        public int size() {
+            int size = 0;
+            for (Segment<T> segment : segments) {
+                size += segment.size();
+            }
+            return size;
+        }
+    }
+
+    
+    static class StringPool {
+        private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+        private final int maxSize;
+
+        StringPool(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public String intern(String value) {
+            if (value == null) return null;
+            String pooled = strings.get(value);
+            if (pooled != null) return pooled;
+            if (strings.size() >= maxSize) return value;
+            pooled = strings.putIfAbsent(value, value);
+            return pooled != null ? pooled : value;
+        }
+
+        public int size() {
+            return strings.size();
+        }
+    }
+
+    
+    static class Recurrence implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final long MINUTE = 60_000L;
+        private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        private static final DateTimeFormatter UNTIL_PARSE_FORMAT = DateTimeFormatter.ofPattern("d/M/yyyy");
+        private static final Pattern EVERY = Pattern.compile("every\\s+(\\d+)\\s*([mhd])");
+        private static final Pattern DAILY = Pattern.compile("daily\\s+at\\s+(\\d{1,2}:\\d{2}(\\s*,\\s*\\d{1,2}:\\d{2})*)");
+
+        private final long intervalMillis;
+        private final LocalTime[] times;
+        private final LocalDate until;
+
+        private Recurrence(long intervalMillis, LocalTime[] times, LocalDate until) {
+            this.intervalMillis = intervalMillis;
+            this.times = times;
+            this.until = until;
+        }
+
+        
+        public static Recurrence parse(String spec) {
+            if (spec == null) return null;
+            String text = spec.trim().toLowerCase(Locale.ROOT);
+            LocalDate until = null;
+            int untilIndex = text.indexOf(" until ");
+            try {
+                if (untilIndex >= 0) {
+                    until = LocalDate.parse(text.substring(untilIndex + 7).trim(), UNTIL_PARSE_FORMAT);
+                    text = text.substring(0, untilIndex).trim();
+                }
+                Matcher every = EVERY.matcher(text);
+                if (every.matches()) {
+                    long amount = Long.parseLong(every.group(1));
+                    long unit = every.group(2).equals("m") ? MINUTE : every.group(2).equals("h") ? 60 * MINUTE : 24 * 60 * MINUTE;
+                    return amount > 0 ? new Recurrence(amount * unit, null, until) : null;
+                }
+                Matcher daily = DAILY.matcher(text);
+                if (daily.matches()) {
+                    String[] parts = daily.group(1).split(",");
+                    LocalTime[] times = new LocalTime[parts.length];
+                    for (int i = 0; i < parts.length; i++) {
+                        times[i] = LocalTime.parse(parts[i].trim(), DateTimeFormatter.ofPattern("H:mm"));
+                    }
+                    Arrays.sort(times);
+                    return new Recurrence(0, times, until);
+                }
+            } catch (DateTimeParseException | NumberFormatException e) {
+                return null;
+            }
+            return null;
+        }
+
+        
+        public long next(long start, long from) {
+            long occurrence;
+            if (times == null) {
+                if (from <= start) {
+                    occurrence = start;
+                } else {
+                    long steps = (from - start + intervalMillis - 1) / intervalMillis;
+                    occurrence = start + steps * intervalMillis;
+                }
+            } else {
+                occurrence = -1;
+                ZoneId zone = ZoneId.systemDefault();
+                LocalDate startDay = Instant.ofEpochMilli(start).atZone(zone).toLocalDate();
+                LocalDate day = Instant.ofEpochMilli(Math.max(start, from)).atZone(zone).toLocalDate();
+                if (day.isBefore(startDay)) day = startDay;
+                for (int attempt = 0; attempt < 2 && occurrence < 0; attempt++, day = day.plusDays(1)) {
+                    for (LocalTime time : times) {
+                        long candidate = day.atTime(time).atZone(zone).toInstant().toEpochMilli();
+                        if (candidate >= from && candidate >= startOfDay(startDay)) {
+                            occurrence = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+            return occurrence >= 0 && withinUntil(occurrence) ? occurrence : -1;
+        }
+
+        
+        public long previous(long start, long before) {
+            if (before <= start && times == null) return -1;
+            long occurrence;
+            if (times == null) {
+                occurrence = start + ((before - start - 1) / intervalMillis) * intervalMillis;
+            } else {
+                occurrence = -1;
+                ZoneId zone = ZoneId.systemDefault();
+                LocalDate startDay = Instant.ofEpochMilli(start).atZone(zone).toLocalDate();
+                LocalDate day = Instant.ofEpochMilli(before).atZone(zone).toLocalDate();
+                for (int attempt = 0; attempt < 2 && occurrence < 0 && !day.isBefore(startDay); attempt++, day = day.minusDays(1)) {
+                    for (int i = times.length - 1; i >= 0; i--) {
+                        long candidate = day.atTime(times[i]).atZone(zone).toInstant().toEpochMilli();
+                        if (candidate < before) {
+                            occurrence = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (occurrence < 0) return -1;
+            long last = lastOccurrenceBound();
+            return occurrence <= last ? occurrence : previous(start, last + 1);
+        }
+
+        public void forEachOccurrence(long start, long from, long to, LongConsumer action) {
+            long occurrence = next(start, from);
+            while (occurrence >= 0 && occurrence < to) {
+                action.accept(occurrence);
+                occurrence = next(start, occurrence + 1);
+            }
+        }
+
+        private boolean withinUntil(long occurrence) {
+            return occurrence <= lastOccurrenceBound();
+        }
+
+        private long lastOccurrenceBound() {
+            if (until == null) return Long.MAX_VALUE;
+            return startOfDay(until.plusDays(1)) - 1;
+        }
+
+        private static long startOfDay(LocalDate day) {
+            return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            if (times == null) {
+                long minutes = intervalMillis / MINUTE;
+                if (minutes % (24 * 60) == 0) {
+                    sb.append("every ").append(minutes / (24 * 60)).append("d");
+                } else if (minutes % 60 == 0) {
+                    sb.append("every ").append(minutes / 60).append("h");
+                } else {
+                    sb.append("every ").append(minutes).append("m");
+                }
+            } else {
+                sb.append("daily at ");
+                for (int i = 0; i < times.length; i++) {
+                    if (i > 0) sb.append(',');
+                    sb.append(times[i].format(DateTimeFormatter.ofPattern("HH:mm")));
+                }
+            }
+            if (until != null) sb.append(" until ").append(until.format(UNTIL_FORMAT));
+            return sb.toString();
+        }
+    }
+
+    
+    static class HealthRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String date;
+        private String bloodPressure;
+        private String sugarLevel;
+        private String oxygenLevel;
+        private transient String details;
+
+        public HealthRecord(String date, String bloodPressure, String sugarLevel, String oxygenLevel) {
+            this.date = date;
+            this.bloodPressure = bloodPressure;
+            this.sugarLevel = sugarLevel;
+            this.oxygenLevel = oxygenLevel;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public String getBloodPressure() {
+            return bloodPressure;
+        }
+
+        public String getSugarLevel() {
+            return sugarLevel;
+        }
+
+        public String getOxygenLevel() {
+            return oxygenLevel;
+        }
+
+        public String getDetails() {
+            if (details == null) {
+                details = "Date: " + (date != null ? date : "No Date") +
+                        ", Blood Pressure: " + (bloodPressure != null ? bloodPressure : "No Data") +
+                        ", Sugar Level: " + (sugarLevel != null ? sugarLevel : "No Data") +
+                        ", Oxygen Level: " + (oxygenLevel != null ? oxygenLevel : "No Data");
+            }
+            return details;
+        }
+
+        
+        public String toFileString() {
+            return date + ";" + bloodPressure + ";" + sugarLevel + ";" + oxygenLevel;
+        }
+
+        
+        public static HealthRecord fromFileString(String fileString) {
+            String[] parts = fileString.split(";", -1);
+            return fromFields(parts, parts.length);
+        }
+
+        static HealthRecord fromFields(String[] parts, int count) {
+            if (count < 4) return null;
+            return new HealthRecord(
+                    emptyToNull(parts[0]),
+                    emptyToNull(parts[1]),
+                    emptyToNull(parts[2]),
+                    emptyToNull(parts[3])
+            );
+        }
+    }
+
+    
+    static class VitalsStore implements Serializable {
+        private static final long serialVersionUID = 1L;
+        static final int NO_DAY = Integer.MIN_VALUE;
+        private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        private static final DateTimeFormatter DAY_PARSE_FORMAT = DateTimeFormatter.ofPattern("d/M/yyyy");
+        private static final int INITIAL_CAPACITY = 8;
+
+        static class Stat {
+            int count;
+            double min = Double.NaN;
+            double max = Double.NaN;
+            double average = Double.NaN;
+            double slopePerDay = Double.NaN;
+
+            @Override
+            public String toString() {
+                if (count == 0) return "No Data";
+                return String.format("avg %.1f (min %.1f, max %.1f, trend %+.2f/day)", average, min, max, slopePerDay);
+            }
+        }
+
+        static class Summary {
+            final Stat systolic = new Stat();
+            final Stat diastolic = new Stat();
+            final Stat sugar = new Stat();
+            final Stat oxygen = new Stat();
+        }
+
+        private int[] epochDays = new int[INITIAL_CAPACITY];
+        private short[] systolic = new short[INITIAL_CAPACITY];
+        private short[] diastolic = new short[INITIAL_CAPACITY];
+        private float[] sugar = new float[INITIAL_CAPACITY];
+        private byte[] oxygen = new byte[INITIAL_CAPACITY];
+        private final Map<Integer, String[]> rawValues = new ConcurrentHashMap<>();
+        private volatile int size;
+
+        public int size() {
+            return size;
+        }
+
+        VitalsStore copy() {
+            VitalsStore copy = new VitalsStore();
+            int rows = size;
+            int capacity = Math.max(INITIAL_CAPACITY, rows);
+            copy.epochDays = Arrays.copyOf(epochDays, capacity);
+            copy.systolic = Arrays.copyOf(systolic, capacity);
+            copy.diastolic = Arrays.copyOf(diastolic, capacity);
+            copy.sugar = Arrays.copyOf(sugar, capacity);
+            copy.oxygen = Arrays.copyOf(oxygen, capacity);
+            for (Map.Entry<Integer, String[]> entry : rawValues.entrySet()) {
+                if (entry.getKey() < rows) copy.rawValues.put(entry.getKey(), entry.getValue());
+            }
+            copy.size = rows;
+            return copy;
+        }
+
+        public void append(HealthRecord record) {
+            if (size == epochDays.length) {
+                int capacity = size * 2;
+                epochDays = Arrays.copyOf(epochDays, capacity);
+                systolic = Arrays.copyOf(systolic, capacity);
+                diastolic = Arrays.copyOf(diastolic, capacity);
+                sugar = Arrays.copyOf(sugar, capacity);
+                oxygen = Arrays.copyOf(oxygen, capacity);
+            }
+            int row = size;
+            epochDays[row] = parseDay(record.date);
+            systolic[row] = -1;
+            diastolic[row] = -1;
+            if (record.bloodPressure != null) {
+                String[] parts = record.bloodPressure.split("/", 2);
+                systolic[row] = parseShort(parts[0]);
+                if (parts.length > 1) diastolic[row] = parseShort(parts[1]);
+            }
+            sugar[row] = parseFloat(record.sugarLevel);
+            oxygen[row] = (byte) Math.min(parseShort(record.oxygenLevel), Byte.MAX_VALUE);
+
+            HealthRecord decoded = decode(row);
+            if (!Objects.equals(decoded.date, record.date)
+                    || !Objects.equals(decoded.bloodPressure, record.bloodPressure)
+                    || !Objects.equals(decoded.sugarLevel, record.sugarLevel)
+                    || !Objects.equals(decoded.oxygenLevel, record.oxygenLevel)) {
+                rawValues.put(row, new String[] {
+                        record.date, record.bloodPressure, record.sugarLevel, record.oxygenLevel});
+            }
+            size = row + 1;
+        }
+
+        
+        public HealthRecord get(int row) {
+            int rows = size;
+            if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+            return decode(row);
+        }
+
+        private HealthRecord decode(int row) {
+            String[] raw = rawValues.get(row);
+            if (raw != null) {
+                return new HealthRecord(raw[0], raw[1], raw[2], raw[3]);
+            }
+            String bloodPressure = null;
+            if (systolic[row] >= 0) {
+                bloodPressure = diastolic[row] >= 0 ? systolic[row] + "/" + diastolic[row] : String.valueOf(systolic[row]);
+            }
+            return new HealthRecord(
+                    epochDays[row] == NO_DAY ? null : LocalDate.ofEpochDay(epochDays[row]).format(DAY_FORMAT),
+                    bloodPressure,
+                    Float.isNaN(sugar[row]) ? null : formatFloat(sugar[row]),
+                    oxygen[row] < 0 ? null : String.valueOf(oxygen[row]));
+        }
+
+        public int epochDay(int row) {
+            return epochDays[row];
+        }
+
+        
+        public Summary summarize(int fromDay, int toDay) {
+            Summary summary = new Summary();
+            accumulate(summary.systolic, fromDay, toDay, systolic, null, null);
+            accumulate(summary.diastolic, fromDay, toDay, diastolic, null, null);
+            accumulate(summary.sugar, fromDay, toDay, null, sugar, null);
+            accumulate(summary.oxygen, fromDay, toDay, null, null, oxygen);
+            return summary;
+        }
+
+        private void accumulate(Stat stat, int fromDay, int toDay, short[] shorts, float[] floats, byte[] bytes) {
+            int count = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sumX = 0;
+            double sumY = 0;
+            double sumXY = 0;
+            double sumXX = 0;
+            int rows = size;
+            int[] days = epochDays;
+            for (int i = 0; i < rows; i++) {
+                int day = days[i];
+                if (day < fromDay || day > toDay) continue;
+                double value;
+                if (shorts != null) {
+                    if (shorts[i] < 0) continue;
+                    value = shorts[i];
+                } else if (floats != null) {
+                    if (Float.isNaN(floats[i])) continue;
+                    value = floats[i];
+                } else {
+                    if (bytes[i] < 0) continue;
+                    value = bytes[i];
+                }
+                count++;
+                if (value < min) min = value;
+                if (value > max) max = value;
+                double x = day - (double) fromDay;
+                sumX += x;
+                sumY += value;
+                sumXY += x * value;
+                sumXX += x * x;
+            }
+            stat.count = count;
+            if (count == 0) return;
+            stat.min = min;
+            stat.max = max;
+            stat.average = sumY / count;
+            double denominator = count * sumXX - sumX * sumX;
+            stat.slopePerDay = denominator == 0 ? 0 : (count * sumXY - sumX * sumY) / denominator;
+        }
+
+        static int parseDay(String date) {
+            if (date == null) return NO_DAY;
+            try {
+                return (int) LocalDate.parse(date.trim(), DAY_PARSE_FORMAT).toEpochDay();
+            } catch (DateTimeParseException e) {
+                return NO_DAY;
+            }
+        }
+
+        private static short parseShort(String value) {
+            if (value == null) return -1;
+            try {
+                int parsed = Integer.parseInt(value.trim());
+                return parsed < 0 || parsed > Short.MAX_VALUE ? -1 : (short) parsed;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private static float parseFloat(String value) {
+            if (value == null) return Float.NaN;
+            try {
+                float parsed = Float.parseFloat(value.trim());
+                return parsed < 0 ? Float.NaN : parsed;
+            } catch (NumberFormatException e) {
+                return Float.NaN;
+            }
+        }
+
+        private static String formatFloat(float value) {
+            return value == (int) value ? String.valueOf((int) value) : String.valueOf(value);
+        }
+    }
+
+    
+    static class CalendarIndex {
+        private final TreeMap<LocalDate, List<Medicine>> byDate = new TreeMap<>();
+        private final List<Medicine> undated = new ArrayList<>();
+        private final List<Medicine> recurring = new ArrayList<>();
+
+        public synchronized void add(Medicine medicine) {
+            LocalDate date = toLocalDate(medicine.epochDay());
+            if (date == null) {
+                undated.add(medicine);
+            } else if (medicine.isRecurring()) {
+                recurring.add(medicine);
+            } else {
+                byDate.computeIfAbsent(date, k -> new ArrayList<>()).add(medicine);
+            }
+        }
+
+        public synchronized void remove(Medicine medicine) {
+            LocalDate date = toLocalDate(medicine.epochDay());
+            List<Medicine> medicines = date == null ? undated
+                    : medicine.isRecurring() ? recurring : byDate.get(date);
+            if (medicines == null) return;
+            for (int i = 0; i < medicines.size(); i++) {
+                if (medicines.get(i) == medicine) {
+                    medicines.remove(i);
+                    break;
+                }
+            }
+            if (date != null && !medicine.isRecurring() && medicines.isEmpty()) byDate.remove(date);
+        }
+
+        public List<Medicine> on(LocalDate date) {
+            List<Medicine> medicines = range(date, date).get(date);
+            return medicines != null ? Collections.unmodifiableList(medicines) : Collections.emptyList();
+        }
+
+        
+        public synchronized NavigableMap<LocalDate, List<Medicine>> range(LocalDate from, LocalDate to) {
+            NavigableMap<LocalDate, List<Medicine>> single = byDate.subMap(from, true, to, true);
+            TreeMap<LocalDate, List<Medicine>> expanded = new TreeMap<>();
+            for (Map.Entry<LocalDate, List<Medicine>> entry : single.entrySet()) {
+                expanded.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            ZoneId zone = ZoneId.systemDefault();
+            long windowStart = from.atStartOfDay(zone).toInstant().toEpochMilli();
+            long windowEnd = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            for (Medicine medicine : recurring) {
+                long start = medicine.startAt();
+                if (start < 0) continue;
+                medicine.getRecurrence().forEachOccurrence(start, windowStart, windowEnd, occurrence -> {
+                    LocalDate day = Instant.ofEpochMilli(occurrence).atZone(zone).toLocalDate();
+                    List<Medicine> medicines = expanded.computeIfAbsent(day, k -> new ArrayList<>());
+                    if (medicines.isEmpty() || medicines.get(medicines.size() - 1) != medicine) {
+                        medicines.add(medicine);
+                    }
+                });
+            }
+            return Collections.unmodifiableNavigableMap(expanded);
+        }
+
+        public NavigableMap<LocalDate, List<Medicine>> month(YearMonth month) {
+            return range(month.atDay(1), month.atEndOfMonth());
+        }
+
+        public NavigableMap<LocalDate, List<Medicine>> week(LocalDate day) {
+            LocalDate monday = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            return range(monday, monday.plusDays(6));
+        }
+
+        public synchronized List<Medicine> undated() {
+            return Collections.unmodifiableList(new ArrayList<>(undated));
+        }
+
+        
+        public synchronized YearMonth defaultMonth(LocalDate today) {
+            if (!recurring.isEmpty()) return YearMonth.from(today);
+            LocalDate date = byDate.ceilingKey(today);
+            if (date == null && !byDate.isEmpty()) date = byDate.lastKey();
+            return YearMonth.from(date != null ? date : today);
+        }
+    }
+
+    
+    static class User implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        interface Loader {
+            void load(User user);
+
+            default void loaded(User user) {
+            }
+
+            default List<Medicine> medicines() {
+                return null;
+            }
+        }
+
+        interface MedicineListener {
+            void medicineAdded(User user, Medicine medicine);
+
+            void medicineRemoved(User user, Medicine medicine);
+        }
+
+        private String name;
+        private int age;
+        private List<Medicine> medicines;
+        private transient volatile List<Medicine> medicineView;
+        private volatile VitalsStore vitals;
+        private transient volatile CalendarIndex calendar = new CalendarIndex();
+        static final long DUE_UNKNOWN = Long.MIN_VALUE;
+
+        private transient volatile Loader loader;
+        private transient MedicineListener listener;
+        private transient int id = -1;
+        private transient volatile long nextDue = DUE_UNKNOWN;
+
+        public User(String name, int age) {
+            this.name = name;
+            this.age = age;
+            this.medicines = new ArrayList<>();
+            this.vitals = new VitalsStore();
+        }
+
+        User(String name, int age, Loader loader) {
+            this(name, age);
+            this.loader = loader;
+        }
+
+        public boolean isLoaded() {
+            return loader == null;
+        }
+
+        
+        public void ensureLoaded() {
+            if (loader == null) return;
+            Loader completed;
+            synchronized (this) {
+                completed = loader;
+                if (completed == null) return;
+                completed.load(this);
+                medicineView = null;
+                for (Medicine medicine : medicines) {
+                    calendar.add(medicine);
+                }
+                if (listener != null) {
+                    for (Medicine medicine : medicines) {
+                        listener.medicineAdded(this, medicine);
+                    }
+                }
+                loader = null;
+            }
+            completed.loaded(this);
+        }
+
+        
+        synchronized void unload(Loader loader) {
+            if (this.loader != null) return;
+            this.loader = loader;
+            if (listener != null) {
+                for (Medicine medicine : medicines) {
+                    listener.medicineRemoved(this, medicine);
+                }
+            }
+            medicines.clear();
+            medicineView = null;
+            vitals = new VitalsStore();
+            calendar = new CalendarIndex();
+        }
+
+        public synchronized void setMedicineListener(MedicineListener listener) {
+            this.listener = listener;
+            if (listener != null && isLoaded()) {
+                for (Medicine medicine : medicines) {
+                    listener.medicineAdded(this, medicine);
+                }
+            }
+        }
+
+        
+        User loadedView() {
+            if (loader == null) return this;
+            User view = new User(name, age);
+            loader.load(view);
+            return view;
+        }
+
+        
+        synchronized User snapshotCopy() {
+            if (loader != null) return new User(name, age, loader);
+            User copy = new User(name, age);
+            List<Medicine> copied = new ArrayList<>(medicines.size());
+            for (Medicine medicine : medicines) {
+                copied.add(medicine.copy());
+            }
+            copy.medicines.addAll(copied);
+            copy.vitals = vitals.copy();
+            copy.id = id;
+            return copy;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        
+        long nextDue() {
+            return nextDue;
+        }
+
+        void setNextDue(long nextDue) {
+            this.nextDue = nextDue;
+        }
+
+        public synchronized void addMedicine(Medicine medicine) {
+            ensureLoaded();
+            medicines.add(medicine);
+            medicineView = null;
+            calendar.add(medicine);
+            if (listener != null) listener.medicineAdded(this, medicine);
+        }
+
+        public synchronized void addMedicines(List<Medicine> added) {
+            ensureLoaded();
+            medicines.addAll(added);
+            medicineView = null;
+            for (Medicine medicine : added) {
+                calendar.add(medicine);
+                if (listener != null) listener.medicineAdded(this, medicine);
+            }
+        }
+
+        public synchronized void removeMedicine(Medicine medicine) {
+            ensureLoaded();
+            if (!medicines.remove(medicine)) return;
+            medicineView = null;
+            calendar.remove(medicine);
+            if (listener != null) listener.medicineRemoved(this, medicine);
+        }
+
+        public List<Medicine> getMedicines() {
+            ensureLoaded();
+            List<Medicine> view = medicineView;
+            return view != null ? view : publishMedicines();
+        }
+
+        public synchronized Medicine getMedicine(int index) {
+            ensureLoaded();
+            return medicines.get(index);
+        }
+
+        
+        private synchronized List<Medicine> publishMedicines() {
+            if (medicineView == null) {
+                medicineView = Collections.unmodifiableList(new ArrayList<>(medicines));
+            }
+            return medicineView;
+        }
+
+        
+        List<Medicine> peekMedicines() {
+            Loader pending = loader;
+            return pending == null ? publishMedicines() : pending.medicines();
+        }
+
+        public synchronized void addHealthRecord(HealthRecord record) {
+            ensureLoaded();
+            vitals.append(record);
+        }
+
+        public List<HealthRecord> getHealthRecords() {
+            ensureLoaded();
+            return new AbstractList<HealthRecord>() {
+                @Override
+                public HealthRecord get(int index) {
+                    return vitals.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return vitals.size();
+                }
+            };
+        }
+
+        public CalendarIndex getCalendar() {
+            ensureLoaded();
+            return calendar;
+        }
+
+        public VitalsStore getVitals() {
+            ensureLoaded();
+            return vitals;
+        }
+
+        
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ensureLoaded();
+            synchronized (this) {
+                out.defaultWriteObject();
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            id = -1;
+            nextDue = DUE_UNKNOWN;
+            calendar = new CalendarIndex();
+            for (Medicine medicine : medicines) {
+                calendar.add(medicine);
+            }
+        }
+
+        
+        public String toFileString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("User:").append(name).append(";").append(age).append("\n");
+            sb.append("Medicines:\n");
+            for (Medicine med : getMedicines()) {
+                sb.append(med.toFileString()).append("\n");
+            }
+                sb.append("HealthRecords:\n");
+                for (HealthRecord record : getHealthRecords()) {
+                    sb.append(record.toFileString()).append("\n");
+            }
+            sb.append("EndUser\n");
+            return sb.toString();
+        }
+    }
+
+    
+    static class UserDataParser {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final int MAX_FIELDS = 16;
+
+        private enum Section { NONE, MEDICINES, HEALTH_RECORDS }
+
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private char[] line = new char[256];
+        private int lineLength;
+        private boolean pendingLine;
+        private final String[] fields = new String[MAX_FIELDS];
+
+        public UserDataParser(Reader reader) {
+            this.reader = reader;
+        }
+
+        public static List<User> parse(Reader reader, List<User> users) throws IOException {
+            UserDataParser parser = new UserDataParser(reader);
+            User user;
+            while ((user = parser.nextUser()) != null) {
+                users.add(user);
+            }
+            return users;
+        }
+
+        public User nextUser() throws IOException {
+            User user = null;
+            List<Medicine> medicines = new ArrayList<>();
+            Section section = Section.NONE;
+            while (nextLine()) {
+                if (lineLength == 0) continue;
+
+                if (startsWith(0, "User:")) {
+                    if (user != null) {
+                        pendingLine = true;
+                        return finish(user, medicines);
+                    }
+                    int count = split(5);
+                    if (count < 2 || fields[0].isEmpty()) continue;
+                    user = new User(fields[0], parseAge(fields[1]));
+                    for (int i = 2; i < count; i++) {
+                        section = sectionOf(fields[i], section);
+                    }
+                } else if (user == null) {
+                    continue;
+                } else if (equalsLine("EndUser")) {
+                    return finish(user, medicines);
+                } else if (equalsLine("Medicines:")) {
+                    section = Section.MEDICINES;
+                } else if (equalsLine("HealthRecords:")) {
+                    section = Section.HEALTH_RECORDS;
+                } else if (section == Section.MEDICINES) {
+                    Medicine medicine = Medicine.fromFields(fields, split(0));
+                    if (medicine != null) medicines.add(medicine);
+                } else if (section == Section.HEALTH_RECORDS) {
+                    HealthRecord record = HealthRecord.fromFields(fields, split(0));
+                    if (record != null) user.addHealthRecord(record);
+                }
+            }
+            return user == null ? null : finish(user, medicines);
+        }
+
+        private static User finish(User user, List<Medicine> medicines) {
+            if (!medicines.isEmpty()) user.addMedicines(medicines);
+            return user;
+        }
+
+        private boolean nextLine() throws IOException {
+            if (pendingLine) {
+                pendingLine = false;
+                return true;
+            }
+            lineLength = 0;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        break;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                appendToLine(start, position - start);
+                if (position < limit) {
+                    position++;
+                    break;
+                }
+            }
+            while (lineLength > 0 && Character.isWhitespace(line[lineLength - 1])) {
+                lineLength--;
+            }
+            return read;
+        }
+
+        private void appendToLine(int start, int length) {
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(buffer, start, line, lineLength, length);
+            lineLength += length;
+        }
+
+        private int split(int from) {
+            int count = 0;
+            int start = from;
+            for (int i = from; i <= lineLength && count < MAX_FIELDS; i++) {
+                if (i == lineLength || line[i] == ';') {
+                    fields[count++] = new String(line, start, i - start);
+                    start = i + 1;
+                }
+            }
+            return count;
+        }
+
+        private boolean startsWith(int offset, String prefix) {
+            if (lineLength - offset < prefix.length()) return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (line[offset + i] != prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private boolean equalsLine(String text) {
+            return lineLength == text.length() && startsWith(0, text);
+        }
+
+        private static Section sectionOf(String field, Section current) {
+            if (field.equals("Medicines:")) return Section.MEDICINES;
+            if (field.equals("HealthRecords:")) return Section.HEALTH_RECORDS;
+            return current;
+        }
+
+        private static int parseAge(String field) {
+            try {
+                return Integer.parseInt(field.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    
+    static class Journal {
+        private static final String HEADER = "Journal;";
+
+        private final File file;
+        private Writer writer;
+
+        public Journal(File file) {
+            this.file = file;
+        }
+
+        public void append(List<String> batch) throws IOException {
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(file, true));
+            }
+            long written = 0;
+            for (String record : batch) {
+                writer.write(record);
+                writer.write('\n');
+                written += record.length() + 1;
+            }
+            writer.flush();
+            Metrics.BYTES_WRITTEN.add(written);
+        }
+
+        
+        public void reset(long baseChecksum) throws IOException {
+            close();
+            try (Writer out = new FileWriter(file, false)) {
+                out.write(HEADER + baseChecksum + "\n");
+            }
+        }
+
+        public int replay(List<User> users, long baseChecksum) throws IOException {
+            if (!file.exists()) return 0;
+
+            int applied = 0;
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line = reader.readLine();
+                if (line == null || !line.equals(HEADER + baseChecksum)) {
+                    return -1;
+                }
+                while ((line = reader.readLine()) != null) {
+                    if (apply(users, line)) applied++;
+                }
+            }
+            return applied;
+        }
+
+        private static boolean apply(List<User> users, String record) {
+            String[] parts = record.split(";", 3);
+            if (parts.length < 3) return false;
+            try {
+                if (parts[0].equals("AddUser")) {
+                    users.add(new User(parts[1], Integer.parseInt(parts[2])));
+                    return true;
+                }
+                User user = users.get(Integer.parseInt(parts[1]));
+                switch (parts[0]) {
+                    case "AddMedicine": {
+                        Medicine medicine = Medicine.fromFileString(parts[2]);
+                        if (medicine == null) return false;
+                        user.addMedicine(medicine);
+                        return true;
+                    }
+                    case "RemoveMedicine":
+                        user.removeMedicine(user.getMedicine(Integer.parseInt(parts[2])));
+                        return true;
+                    case "MarkTaken":
+                        user.getMedicine(Integer.parseInt(parts[2])).setTaken(true);
+                        return true;
+                    case "MarkMissed":
+                        user.getMedicine(Integer.parseInt(parts[2])).setMissed();
+                        return true;
+                    case "MarkOccurrence": {
+                        String[] occurrence = parts[2].split(";", -1);
+                        if (occurrence.length < 3) return false;
+                        user.getMedicine(Integer.parseInt(occurrence[0]))
+                                .markOccurrence(Long.parseLong(occurrence[1]) * 60_000L, occurrence[2].equals("T"));
+                        return true;
+                    }
+                    case "AddHealthRecord": {
+                        HealthRecord healthRecord = HealthRecord.fromFileString(parts[2]);
+                        if (healthRecord == null) return false;
+                        user.addHealthRecord(healthRecord);
+                        return true;
+                    }
+                    default:
+                        return false;
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return false;
+            }
+        }
+
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+
+        public static String addUser(User user) {
+            return "AddUser;" + user.getName() + ";" + user.getAge();
+        }
+
+        public static String addMedicine(int userIndex, Medicine medicine) {
+            return "AddMedicine;" + userIndex + ";" + medicine.toFileString();
+        }
+
+        public static String removeMedicine(int userIndex, int medicineIndex) {
+            return "RemoveMedicine;" + userIndex + ";" + medicineIndex;
+        }
+
+        public static String markTaken(int userIndex, int medicineIndex) {
+            return "MarkTaken;" + userIndex + ";" + medicineIndex;
+        }
+
+        public static String markMissed(int userIndex, int medicineIndex) {
+            return "MarkMissed;" + userIndex + ";" + medicineIndex;
+        }
+
+        public static String markOccurrence(int userIndex, int medicineIndex, long occurrenceAt, boolean taken) {
+            return "MarkOccurrence;" + userIndex + ";" + medicineIndex + ";" + occurrenceAt / 60_000L + ";" + (taken ? "T" : "M");
+        }
+
+        public static String addHealthRecord(int userIndex, HealthRecord record) {
+            return "AddHealthRecord;" + userIndex + ";" + record.toFileString();
+        }
+    }
+
+    
+    interface SnapshotFormat {
+        long read(File file, List<User> users) throws IOException;
+
+        long write(OutputStream out, List<User> users) throws IOException;
+    }
+
+    
+    static class TextSnapshotFormat implements SnapshotFormat {
+        private static final long DEFAULT_PARALLEL_THRESHOLD = 8L * 1024 * 1024;
+        private static final int BLOCKS_PER_THREAD = 4;
+        private static final byte[] USER_START = "\nUser:".getBytes(StandardCharsets.US_ASCII);
+
+        private final int parallelism;
+        private final long parallelThreshold;
+
+        public TextSnapshotFormat() {
+            this(Integer.getInteger("smr.load.parallelism", Runtime.getRuntime().availableProcessors()),
+                    DEFAULT_PARALLEL_THRESHOLD);
+        }
+
+        public TextSnapshotFormat(int parallelism, long parallelThreshold) {
+            this.parallelism = parallelism;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        public long read(File file, List<User> users) throws IOException {
+            long length = file.length();
+            if (parallelism > 1 && length >= parallelThreshold && length <= Integer.MAX_VALUE - 8) {
+                return readParallel(file, users);
+            }
+            CRC32 crc = new CRC32();
+            try (Reader reader = new InputStreamReader(
+                    new CheckedInputStream(new FileInputStream(file), crc))) {
+                UserDataParser.parse(reader, users);
+            }
+            return crc.getValue();
+        }
+
+        
+        private long readParallel(File file, List<User> users) throws IOException {
+            byte[] data = Files.readAllBytes(file.toPath());
+            int[] boundaries = blockBoundaries(data, parallelism * BLOCKS_PER_THREAD);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                ForkJoinTask<Long> checksum = pool.submit(() -> {
+                    CRC32 crc = new CRC32();
+                    crc.update(data, 0, data.length);
+                    return crc.getValue();
+                });
+                List<ForkJoinTask<List<User>>> blocks = new ArrayList<>();
+                for (int i = 0; i + 1 < boundaries.length; i++) {
+                    int start = boundaries[i];
+                    int end = boundaries[i + 1];
+                    blocks.add(pool.submit(() -> UserDataParser.parse(new InputStreamReader(
+                            new ByteArrayInputStream(data, start, end - start)), new ArrayList<>())));
+                }
+                for (ForkJoinTask<List<User>> block : blocks) {
+                    users.addAll(block.get());
+                }
+                return checksum.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading " + file);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        
+        static int[] blockBoundaries(byte[] data, int blocks) {
+            int[] boundaries = new int[blocks + 1];
+            int count = 1;
+            int target = Math.max(1, data.length / blocks);
+            int position = target;
+            while (position < data.length && count < blocks) {
+                int next = indexOf(data, USER_START, position);
+                if (next < 0) break;
+                boundaries[count++] = next + 1;
+                position = next + target;
+            }
+            boundaries[count++] = data.length;
+            return Arrays.copyOf(boundaries, count);
+        }
+
+        private static int indexOf(byte[] data, byte[] pattern, int from) {
+            outer:
+            for (int i = from; i <= data.length - pattern.length; i++) {
+                if (data[i] != pattern[0]) continue;
+                for (int j = 1; j < pattern.length; j++) {
+                    if (data[i + j] != pattern[j]) continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public long write(OutputStream out, List<User> users) throws IOException {
+            CRC32 crc = new CRC32();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(out, crc)));
+            for (User user : users) {
+                writer.write(user.toFileString());
+            }
+            writer.flush();
+            return crc.getValue();
+        }
+    }
+
+    
+    static class BinarySnapshotFormat implements SnapshotFormat {
+        static final int MAGIC = 0x534D5242;
+        static final int VERSION = 2;
+        static final int HEADER_SIZE = 32;
+
+        @Override
+        public long read(File file, List<User> users) throws IOException {
+            BinarySnapshot snapshot = BinarySnapshot.open(file);
+            for (int i = 0; i < snapshot.userCount(); i++) {
+                users.add(snapshot.user(i));
+            }
+            return snapshot.snapshotId();
+        }
+
+        @Override
+        public long write(OutputStream target, List<User> users) throws IOException {
+            long snapshotId = System.currentTimeMillis() ^ System.nanoTime();
+            StringTable strings = new StringTable();
+            int[] userOffsets = new int[users.size()];
+            int[] userNames = new int[users.size()];
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+            DataOutputStream out = new DataOutputStream(body);
+            long size = HEADER_SIZE;
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                userNames[i] = strings.intern(user.getName());
+                User.Loader loader = user.loader;
+                if (loader instanceof BinarySnapshot.UserLoader) {
+                    BinarySnapshot.UserLoader record = (BinarySnapshot.UserLoader) loader;
+                    userOffsets[i] = checkedSize(size);
+                    size = checkedSize(size + record.size());
+                    record.copyTo(out, strings);
+                    continue;
+                }
+                user = user.loadedView();
+
+                synchronized (user) {
+                    userOffsets[i] = checkedSize(size);
+                    size = checkedSize(size + 8L + 33L * user.getMedicines().size() + 16L * user.getHealthRecords().size());
+                    out.writeInt(user.getMedicines().size());
+                    for (Medicine medicine : user.getMedicines()) {
+                        out.writeInt(strings.intern(medicine.getName()));
+                        out.writeInt(strings.intern(medicine.getDosage()));
+                        out.writeInt(strings.intern(medicine.getStrength()));
+                        out.writeInt(strings.intern(medicine.getTiming()));
+                        out.writeInt(strings.intern(medicine.getDate()));
+                        out.writeInt(strings.intern(medicine.getStatus()));
+                        out.writeBoolean(medicine.isTaken());
+                        Recurrence recurrence = medicine.getRecurrence();
+                        out.writeInt(strings.intern(recurrence != null ? recurrence.toString() : null));
+                        out.writeInt(strings.intern(recurrence != null ? medicine.encodeExceptions() : null));
+                    }
+                    out.writeInt(user.getHealthRecords().size());
+                    for (HealthRecord record : user.getHealthRecords()) {
+                        out.writeInt(strings.intern(record.date));
+                        out.writeInt(strings.intern(record.bloodPressure));
+                        out.writeInt(strings.intern(record.sugarLevel));
+                        out.writeInt(strings.intern(record.oxygenLevel));
+                    }
+                }
+            }
+
+            int stringTableOffset = checkedSize(size);
+            List<byte[]> encoded = strings.encoded;
+            size += 4L * encoded.size();
+            for (byte[] bytes : encoded) {
+                size = checkedSize(size + 4L + bytes.length);
+            }
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                out.writeInt(offset);
+                offset += 4 + bytes.length;
+            }
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            int indexOffset = checkedSize(size);
+            checkedSize(size + 12L * users.size());
+            for (int i = 0; i < users.size(); i++) {
+                out.writeInt(userNames[i]);
+                out.writeInt(users.get(i).getAge());
+                out.writeInt(userOffsets[i]);
+            }
+
+            DataOutputStream header = new DataOutputStream(target);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(snapshotId);
+            header.writeInt(users.size());
+            header.writeInt(strings.encoded.size());
+            header.writeInt(stringTableOffset);
+            header.writeInt(indexOffset);
+            body.writeTo(target);
+            target.flush();
+            return snapshotId;
+        }
+
+        private static int checkedSize(long size) throws IOException {
+            if (size > Integer.MAX_VALUE) throw new IOException("Binary snapshot exceeds 2 GB");
+            return (int) size;
+        }
+
+        
+        static class StringTable {
+            private final Map<String, Integer> ids = new HashMap<>();
+            private final Map<BinarySnapshot, int[]> copied = new IdentityHashMap<>();
+            private final List<byte[]> encoded = new ArrayList<>();
+
+            int intern(String value) {
+                if (value == null) return -1;
+                Integer id = ids.get(value);
+                if (id == null) {
+                    id = encoded.size();
+                    ids.put(value, id);
+                    encoded.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+                return id;
+            }
+
+            int copy(BinarySnapshot snapshot, int id) {
+                if (id < 0) return -1;
+                int[] remapped = copied.get(snapshot);
+                if (remapped == null) {
+                    remapped = new int[snapshot.stringCount()];
+                    Arrays.fill(remapped, -1);
+                    copied.put(snapshot, remapped);
+                }
+                if (remapped[id] < 0) {
+                    remapped[id] = encoded.size();
+                    encoded.add(snapshot.stringBytes(id));
+                }
+                return remapped[id];
+            }
+        }
+    }
+
+    
+    static class BinarySnapshot {
+        private final MappedByteBuffer buffer;
+        private final long snapshotId;
+        private final int userCount;
+        private final int stringTableOffset;
+        private final int stringDataOffset;
+        private final int indexOffset;
+        private final String[] strings;
+        private final int version;
+
+        private BinarySnapshot(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            this.version = buffer.getInt(4);
+            if (buffer.getInt(0) != BinarySnapshotFormat.MAGIC
+                    || version < 1 || version > BinarySnapshotFormat.VERSION) {
+                throw new IOException("Not a medicine reminder binary snapshot");
+            }
+            this.snapshotId = buffer.getLong(8);
+            this.userCount = buffer.getInt(16);
+            this.strings = new String[buffer.getInt(20)];
+            this.stringTableOffset = buffer.getInt(24);
+            this.stringDataOffset = stringTableOffset + 4 * strings.length;
+            this.indexOffset = buffer.getInt(28);
+        }
+
+        public static BinarySnapshot open(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Binary snapshot exceeds 2 GB");
+                }
+                return new BinarySnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        public long snapshotId() {
+            return snapshotId;
+        }
+
+        public int userCount() {
+            return userCount;
+        }
+
+        int stringCount() {
+            return strings.length;
+        }
+
+        public User user(int index) {
+            int entry = indexOffset + index * 12;
+            return new User(string(buffer.getInt(entry)), buffer.getInt(entry + 4), new UserLoader(buffer.getInt(entry + 8)));
+        }
+
+        
+        class UserLoader implements User.Loader {
+            private final int offset;
+
+            UserLoader(int offset) {
+                this.offset = offset;
+            }
+
+            @Override
+            public void load(User user) {
+                decode(offset, user);
+            }
+
+            @Override
+            public List<Medicine> medicines() {
+                return decodeMedicines(offset);
+            }
+
+            long size() {
+                int medicineCount = buffer.getInt(offset);
+                int recordCount = buffer.getInt(offset + 4 + medicineCount * medicineSize());
+                return 8L + 33L * medicineCount + 16L * recordCount;
+            }
+
+            void copyTo(DataOutputStream out, BinarySnapshotFormat.StringTable strings) throws IOException {
+                BinarySnapshot snapshot = BinarySnapshot.this;
+                int position = offset;
+                int medicineCount = buffer.getInt(position);
+                out.writeInt(medicineCount);
+                position += 4;
+                for (int i = 0; i < medicineCount; i++) {
+                    for (int field = 0; field < 6; field++) {
+                        out.writeInt(strings.copy(snapshot, buffer.getInt(position + 4 * field)));
+                    }
+                    out.writeByte(buffer.get(position + 24));
+                    if (version >= 2) {
+                        out.writeInt(strings.copy(snapshot, buffer.getInt(position + 25)));
+                        out.writeInt(strings.copy(snapshot, buffer.getInt(position + 29)));
+                    } else {
+                        out.writeInt(-1);
+                        out.writeInt(-1);
+                    }
+                    position += medicineSize();
+                }
+                int recordCount = buffer.getInt(position);
+                out.writeInt(recordCount);
+                position += 4;
+                for (int i = 0; i < recordCount * 4; i++) {
+                    out.writeInt(strings.copy(snapshot, buffer.getInt(position + 4 * i)));
+                }
+            }
+        }
+
+        private int medicineSize() {
+            return version >= 2 ? 33 : 25;
+        }
+
+        private void decode(int offset, User user) {
+            List<Medicine> medicines = decodeMedicines(offset);
+            user.medicines.addAll(medicines);
+            int position = offset + 4 + medicines.size() * medicineSize();
+            int recordCount = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < recordCount; i++) {
+                user.vitals.append(new HealthRecord(
+                        string(buffer.getInt(position)),
+                        string(buffer.getInt(position + 4)),
+                        string(buffer.getInt(position + 8)),
+                        string(buffer.getInt(position + 12))));
+                position += 16;
+            }
+        }
+
+        private List<Medicine> decodeMedicines(int offset) {
+            int position = offset;
+            int medicineCount = buffer.getInt(position);
+            position += 4;
+            List<Medicine> medicines = new ArrayList<>(medicineCount);
+            for (int i = 0; i < medicineCount; i++) {
+                Medicine medicine = new Medicine(
+                        string(buffer.getInt(position)),
+                        string(buffer.getInt(position + 4)),
+                        string(buffer.getInt(position + 8)),
+                        string(buffer.getInt(position + 12)),
+                        string(buffer.getInt(position + 16)));
+                medicine.restoreState(buffer.get(position + 24) != 0, string(buffer.getInt(position + 20)));
+                position += 25;
+                if (version >= 2) {
+                    String recurrence = string(buffer.getInt(position));
+                    medicine.setRecurrence(Recurrence.parse(recurrence));
+                    if (medicine.isRecurring()) {
+                        medicine.decodeExceptions(string(buffer.getInt(position + 4)));
+                    }
+                    position += 8;
+                }
+                medicines.add(medicine);
+            }
+            return medicines;
+        }
+
+        private String string(int id) {
+            if (id < 0) return null;
+            String value = strings[id];
+            if (value == null) {
+                value = new String(stringBytes(id), StandardCharsets.UTF_8);
+                strings[id] = value;
+            }
+            return value;
+        }
+
+        byte[] stringBytes(int id) {
+            int position = stringDataOffset + buffer.getInt(stringTableOffset + 4 * id);
+            byte[] bytes = new byte[buffer.getInt(position)];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(position + 4);
+            slice.get(bytes);
+            return bytes;
+        }
+    }
+
+    
+    static class UserRegistry {
+        private volatile User[] users = new User[16];
+        private volatile int size;
+        private final List<String> foldedNames = new ArrayList<>();
+        private final Map<String, User> byName = new ConcurrentHashMap<>();
+
+        
+        public synchronized User register(User user) {
+            User[] array = users;
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+                users = array;
+            }
+            user.id = size;
+            array[size] = user;
+            foldedNames.add(user.getName().toLowerCase(Locale.ROOT));
+            byName.putIfAbsent(user.getName(), user);
+            size = user.id + 1;
+            return user;
+        }
+
+        public synchronized User registerIfAbsent(User user) {
+            return containsName(user.getName()) ? null : register(user);
+        }
+
+        public User byId(int id) {
+            int count = size;
+            return id >= 0 && id < count ? users[id] : null;
+        }
+
+        public User byName(String name) {
+            return byName.get(name);
+        }
+
+        public boolean containsName(String name) {
+            return byName.containsKey(name);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        
+        public List<User> asList() {
+            int count = size;
+            User[] array = users;
+            return new AbstractList<User>() {
+                @Override
+                public User get(int index) {
+                    if (index < 0 || index >= count) throw new IndexOutOfBoundsException("User " + index + " of " + count);
+                    return array[index];
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+
+        public List<User> snapshot() {
+            return new ArrayList<>(asList());
+        }
+
+        public synchronized int[] idsMatching(String filter) {
+            String folded = filter.toLowerCase(Locale.ROOT);
+            int[] ids = new int[size];
+            int count = 0;
+            for (int i = 0; i < foldedNames.size(); i++) {
+                if (foldedNames.get(i).contains(folded)) ids[count++] = i;
+            }
+            return Arrays.copyOf(ids, count);
+        }
+    }
+
+    
+    static class UserListModel extends AbstractListModel<User> {
+        private static final long serialVersionUID = 1L;
+
+        private final UserRegistry registry;
+        private int[] filtered;
+
+        UserListModel(UserRegistry registry) {
+            this.registry = registry;
+        }
+
+        public void setFilter(String filter) {
+            int oldSize = getSize();
+            filtered = filter == null || filter.trim().isEmpty() ? null : registry.idsMatching(filter.trim());
+            fireContentsChanged(this, 0, Math.max(oldSize, getSize()) - 1);
+        }
+
+        @Override
+        public int getSize() {
+            return filtered != null ? filtered.length : registry.size();
+        }
+
+        @Override
+        public User getElementAt(int index) {
+            return registry.byId(filtered != null ? filtered[index] : index);
+        }
+    }
+
+    
+    static class UserDataStore {
+        private static final int DEFAULT_COMPACT_THRESHOLD = 500;
+
+        static class Snapshot {
+            final byte[] data;
+            final long checksum;
+
+            Snapshot(byte[] data, long checksum) {
+                this.data = data;
+                this.checksum = checksum;
+            }
+        }
+
+        private final File dataFile;
+        private final SnapshotFormat format;
+        private final File legacyFile;
+        private final Journal journal;
+        private final int compactThreshold;
+        private long snapshotChecksum;
+        private int changesSinceSnapshot;
+
+        public UserDataStore(String dataFile) {
+            this(dataFile, new TextSnapshotFormat(), null);
+        }
+
+        public UserDataStore(String dataFile, SnapshotFormat format, String legacyFile) {
+            this.dataFile = new File(dataFile);
+            this.format = format;
+            this.legacyFile = legacyFile != null ? new File(legacyFile) : null;
+            this.journal = new Journal(new File(dataFile + ".journal"));
+            this.compactThreshold = Integer.getInteger("smr.journal.compactThreshold", DEFAULT_COMPACT_THRESHOLD);
+        }
+
+        
+        public static UserDataStore create(String textDataFile) {
+            if ("binary".equals(System.getProperty("smr.storage"))) {
+                String binaryFile = textDataFile.replaceFirst("\\.txt$", "") + ".bin";
+                return new UserDataStore(binaryFile, new BinarySnapshotFormat(), textDataFile);
+            }
+            return new UserDataStore(textDataFile);
+        }
+
+        public List<User> load() throws IOException {
+            if (!dataFile.exists() && legacyFile != null && legacyFile.exists()) {
+                UserDataStore legacy = new UserDataStore(legacyFile.getPath());
+                List<User> users = legacy.load();
+                legacy.close();
+                compact(users);
+                return users;
+            }
+
+            List<User> users = new ArrayList<>();
+            snapshotChecksum = dataFile.exists() ? format.read(dataFile, users) : new CRC32().getValue();
+
+            int replayed = journal.replay(users, snapshotChecksum);
+            if (replayed < 0) {
+                journal.reset(snapshotChecksum);
+            }
+            changesSinceSnapshot = Math.max(replayed, 0);
+            return users;
+        }
+
+        
+        public synchronized boolean recordChange() {
+            if (++changesSinceSnapshot < compactThreshold) return false;
+            changesSinceSnapshot = 0;
+            return true;
+        }
+
+        public void append(List<User> users, String record) throws IOException {
+            appendToJournal(Collections.singletonList(record));
+            if (recordChange()) {
+                compact(users);
+            }
+        }
+
+        public synchronized void appendToJournal(List<String> records) throws IOException {
+            if (!journal.file.exists()) {
+                journal.reset(snapshotChecksum);
+            }
+            journal.append(records);
+        }
+
+        public Snapshot encode(List<User> users) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            long checksum = format.write(out, users);
+            return new Snapshot(out.toByteArray(), checksum);
+        }
+
+        public synchronized void install(Snapshot snapshot) throws IOException {
+            File tempFile = new File(dataFile.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(snapshot.data);
+                out.getFD().sync();
+            }
+            Metrics.BYTES_WRITTEN.add(snapshot.data.length);
+            Files.move(tempFile.toPath(), dataFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotChecksum = snapshot.checksum;
+            journal.reset(snapshotChecksum);
+        }
+
+        public void compact(List<User> users) throws IOException {
+            install(encode(users));
+        }
+
+        public synchronized void close() throws IOException {
+            journal.close();
+        }
+    }
+
+    
+    static class ShardedStore implements Flushable {
+        private static final String MANIFEST_HEADER = "Manifest;1";
+        private static final int DEFAULT_MAX_RESIDENT = 1000;
+        private static final int MIN_RESIDENT = 16;
+        private static final double LOW_MEMORY_FRACTION = 0.85;
+
+        interface ResidencyListener {
+            void userLoaded(User user);
+
+            void userEvicted(User user);
+
+            long nextDue(User user);
+
+            boolean canEvict(User user);
+        }
+
+        private final File directory;
+        private final File manifestFile;
+        private final File legacyFile;
+        private final int maxResident;
+        private final Map<User, Long> dirty = new ConcurrentHashMap<>();
+        private final LinkedHashMap<User, Boolean> resident = new LinkedHashMap<>(16, 0.75f, true);
+        private final List<User> users = new CopyOnWriteArrayList<>();
+        private volatile boolean manifestDirty;
+        private ResidencyListener residencyListener;
+
+        public ShardedStore(String dataFile) {
+            File file = new File(dataFile).getAbsoluteFile();
+            this.directory = new File(file.getParentFile(), file.getName().replaceFirst("\\.[^.]*$", "") + ".shards");
+            this.manifestFile = new File(directory, "manifest.txt");
+            this.legacyFile = file;
+            this.maxResident = Integer.getInteger("smr.shards.maxResident", DEFAULT_MAX_RESIDENT);
+        }
+
+        public void setResidencyListener(ResidencyListener residencyListener) {
+            this.residencyListener = residencyListener;
+        }
+
+        public List<User> load() throws IOException {
+            if (!manifestFile.exists()) {
+                return migrate();
+            }
+            List<User> loaded = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                if (!MANIFEST_HEADER.equals(line)) throw new IOException("Unknown manifest: " + manifestFile);
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    String[] parts = line.split(";", -1);
+                    int id = Integer.parseInt(parts[0]);
+                    if (id != loaded.size()) throw new IOException("Manifest out of order at user " + id);
+                    User user = new User(parts[1], parts.length > 2 ? Integer.parseInt(parts[2]) : 0, new ShardLoader(id));
+                    if (parts.length > 3) user.setNextDue(Long.parseLong(parts[3]));
+                    loaded.add(user);
+                }
+            }
+            users.addAll(loaded);
+            return loaded;
+        }
+
+        private List<User> migrate() throws IOException {
+            List<User> migrated = new ArrayList<>();
+            if (legacyFile.exists()) {
+                UserDataStore legacy = new UserDataStore(legacyFile.getPath());
+                migrated = legacy.load();
+                legacy.close();
+            }
+            Files.createDirectories(directory.toPath());
+            for (int id = 0; id < migrated.size(); id++) {
+                writeShard(id, migrated.get(id).toFileString());
+            }
+            users.addAll(migrated);
+            writeManifest();
+            synchronized (resident) {
+                for (User user : migrated) {
+                    resident.put(user, Boolean.TRUE);
+                }
+            }
+            return migrated;
+        }
+
+        public void markDirty(User user) {
+            dirty.merge(user, 1L, Long::sum);
+            synchronized (resident) {
+                resident.put(user, Boolean.TRUE);
+            }
+        }
+
+        public void userAdded(User user) {
+            users.add(user);
+            manifestDirty = true;
+        }
+
+        public List<User> residentUsers() {
+            synchronized (resident) {
+                return new ArrayList<>(resident.keySet());
+            }
+        }
+
+        public int residentCount() {
+            synchronized (resident) {
+                return resident.size();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            Files.createDirectories(directory.toPath());
+            for (Map.Entry<User, Long> entry : new ArrayList<>(dirty.entrySet())) {
+                User user = entry.getKey();
+                String text;
+                synchronized (user) {
+                    text = user.toFileString();
+                }
+                writeShard(user.getId(), text);
+                dirty.remove(user, entry.getValue());
+                updateNextDue(user);
+            }
+            evict();
+            if (manifestDirty) {
+                manifestDirty = false;
+                writeManifest();
+            }
+        }
+
+        private void updateNextDue(User user) {
+            if (residencyListener == null) return;
+            long due = residencyListener.nextDue(user);
+            if (due != user.nextDue()) {
+                user.setNextDue(due);
+                manifestDirty = true;
+            }
+        }
+
+        
+        private void evict() {
+            while (true) {
+                User eldest = null;
+                synchronized (resident) {
+                    int count = resident.size();
+                    if (count <= maxResident && (count <= MIN_RESIDENT || !memoryLow())) return;
+                    for (User user : resident.keySet()) {
+                        if (!dirty.containsKey(user) && (residencyListener == null || residencyListener.canEvict(user))) {
+                            eldest = user;
+                            break;
+                        }
+                    }
+                    if (eldest == null) return;
+                    resident.remove(eldest);
+                }
+                synchronized (eldest) {
+                    if (dirty.containsKey(eldest)) {
+                        synchronized (resident) {
+                            resident.put(eldest, Boolean.TRUE);
+                        }
+                        return;
+                    }
+                    updateNextDue(eldest);
+                    if (residencyListener != null) residencyListener.userEvicted(eldest);
+                    eldest.unload(new ShardLoader(eldest.getId()));
+                }
+            }
+        }
+
+        private static boolean memoryLow() {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            return used > runtime.maxMemory() * LOW_MEMORY_FRACTION;
+        }
+
+        private void writeShard(int id, String text) throws IOException {
+            install(shardFile(id), text);
+        }
+
+        private void writeManifest() throws IOException {
+            StringBuilder sb = new StringBuilder(MANIFEST_HEADER).append('\n');
+            for (User user : users) {
+                sb.append(user.getId()).append(';').append(user.getName()).append(';').append(user.getAge())
+                        .append(';').append(user.nextDue()).append('\n');
+            }
+            install(manifestFile, sb.toString());
+        }
+
+        private static void install(File file, String text) throws IOException {
+            File tempFile = new File(file.getPath() + ".tmp");
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(bytes);
+                out.getFD().sync();
+            }
+            Metrics.BYTES_WRITTEN.add(bytes.length);
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private File shardFile(int id) {
+            return new File(directory, "user-" + id + ".txt");
+        }
+
+        private class ShardLoader implements User.Loader {
+            private final int id;
+
+            ShardLoader(int id) {
+                this.id = id;
+            }
+
+            @Override
+            public void load(User user) {
+                File file = shardFile(id);
+                if (!file.exists()) return;
+                try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    User shard = new UserDataParser(reader).nextUser();
+                    if (shard == null) return;
+                    user.medicines.addAll(shard.medicines);
+                    user.vitals = shard.vitals;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void loaded(User user) {
+                Metrics.USERS_LOADED.increment();
+                synchronized (resident) {
+                    resident.put(user, Boolean.TRUE);
+                }
+                if (residencyListener != null) residencyListener.userLoaded(user);
+            }
+        }
+    }
+
+    
+    static class AdherenceLog implements Flushable {
+        static final byte TAKEN = 1;
+        static final byte MISSED = 2;
+        private static final int INITIAL_EVENTS = 8;
+        private static final int RECORD_BYTES = 21;
+        private static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+        static class Rate {
+            final int taken;
+            final int missed;
+
+            Rate(int taken, int missed) {
+                this.taken = taken;
+                this.missed = missed;
+            }
+
+            double percent() {
+                int total = taken + missed;
+                return total == 0 ? Double.NaN : 100.0 * taken / total;
+            }
+
+            @Override
+            public String toString() {
+                return taken + missed == 0 ? "n/a" : String.format("%.0f%%", percent());
+            }
+        }
+
+        static class UserLog {
+            private long[] doseIds = new long[0];
+            private int[] scheduled = new int[0];
+            private int[] actual = new int[0];
+            private byte[] outcomes = new byte[0];
+            private int size;
+            private int[] latest = new int[0];
+            private int doses;
+            private int baseDay = Integer.MIN_VALUE;
+            private int[] takenPerDay = new int[0];
+            private int[] missedPerDay = new int[0];
+
+            
+            synchronized void append(long doseId, int scheduledMinute, int actualMinute, byte outcome) {
+                if ((doses + 1) * 2 > latest.length) rehash(Math.max(INITIAL_EVENTS * 2, latest.length * 2));
+                int slot = slot(doseId);
+                if (latest[slot] != 0) {
+                    int previous = latest[slot] - 1;
+                    count(scheduled[previous], outcomes[previous], -1);
+                } else {
+                    doses++;
+                }
+                latest[slot] = size + 1;
+
+                if (size == doseIds.length) {
+                    int capacity = Math.max(INITIAL_EVENTS, size * 2);
+                    doseIds = Arrays.copyOf(doseIds, capacity);
+                    scheduled = Arrays.copyOf(scheduled, capacity);
+                    actual = Arrays.copyOf(actual, capacity);
+                    outcomes = Arrays.copyOf(outcomes, capacity);
+                }
+                doseIds[size] = doseId;
+                scheduled[size] = scheduledMinute;
+                actual[size] = actualMinute;
+                outcomes[size] = outcome;
+                size++;
+                count(scheduledMinute, outcome, 1);
+            }
+
+            private void count(int scheduledMinute, byte outcome, int delta) {
+                int day = Math.floorDiv(scheduledMinute, 24 * 60);
+                ensureDay(day);
+                if (outcome == TAKEN) {
+                    takenPerDay[day - baseDay] += delta;
+                } else {
+                    missedPerDay[day - baseDay] += delta;
+                }
+            }
+
+            private int slot(long doseId) {
+                int mask = latest.length - 1;
+                long hash = doseId * 0x9E3779B97F4A7C15L;
+                int slot = (int) (hash ^ (hash >>> 32)) & mask;
+                while (latest[slot] != 0 && doseIds[latest[slot] - 1] != doseId) {
+                    slot = (slot + 1) & mask;
+                }
+                return slot;
+            }
+
+            private void rehash(int capacity) {
+                int[] old = latest;
+                latest = new int[capacity];
+                for (int position : old) {
+                    if (position != 0) latest[slot(doseIds[position - 1])] = position;
+                }
+            }
+
+            private void ensureDay(int day) {
+                if (baseDay == Integer.MIN_VALUE) {
+                    baseDay = day;
+                }
+                if (day < baseDay) {
+                    int shift = baseDay - day;
+                    takenPerDay = shifted(takenPerDay, shift);
+                    missedPerDay = shifted(missedPerDay, shift);
+                    baseDay = day;
+                }
+                if (day - baseDay >= takenPerDay.length) {
+                    int capacity = Math.max(day - baseDay + 1, takenPerDay.length * 2);
+                    takenPerDay = Arrays.copyOf(takenPerDay, capacity);
+                    missedPerDay = Arrays.copyOf(missedPerDay, capacity);
+                }
+            }
+
+            private static int[] shifted(int[] counts, int shift) {
+                int[] copy = new int[counts.length + shift];
+                System.arraycopy(counts, 0, copy, shift, counts.length);
+                return copy;
+            }
+
+            
+            public synchronized Rate rate(int fromDay, int toDay) {
+                int taken = 0;
+                int missed = 0;
+                int from = Math.max(fromDay - baseDay, 0);
+                int to = Math.min(toDay - baseDay, takenPerDay.length - 1);
+                for (int i = from; i <= to; i++) {
+                    taken += takenPerDay[i];
+                    missed += missedPerDay[i];
+                }
+                return new Rate(taken, missed);
+            }
+
+            public synchronized int size() {
+                return size;
+            }
+
+            public synchronized long doseId(int event) {
+                return doseIds[event];
+            }
+
+            public synchronized long scheduledAt(int event) {
+                return scheduled[event] * 60_000L;
+            }
+
+            public synchronized long actualAt(int event) {
+                return actual[event] * 60_000L;
+            }
+
+            public synchronized byte outcome(int event) {
+                return outcomes[event];
+            }
+        }
+
+        private final File directory;
+        private final String prefix;
+        private final long segmentBytes;
+        private final Map<Integer, UserLog> logs = new ConcurrentHashMap<>();
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private int segmentNumber;
+
+        public AdherenceLog(String dataFile) {
+            File file = new File(dataFile).getAbsoluteFile();
+            this.directory = file.getParentFile();
+            this.prefix = file.getName().replaceFirst("\\.[^.]*$", "") + ".adherence.";
+            this.segmentBytes = Long.getLong("smr.adherence.segmentBytes", DEFAULT_SEGMENT_BYTES);
+        }
+
+        public UserLog forUser(User user) {
+            return logs.computeIfAbsent(user.getId(), k -> new UserLog());
+        }
+
+        public static long doseId(Medicine medicine, long scheduledAt) {
+            int key = Objects.hash(medicine.getName(), medicine.getStrength(), medicine.getDate(), medicine.getTiming());
+            return ((long) key << 32) | ((scheduledAt / 60_000L) & 0xFFFFFFFFL);
+        }
+
+        public void record(User user, Medicine medicine, long scheduledAt, long actualAt, boolean taken) {
+            long doseId = doseId(medicine, scheduledAt);
+            int scheduledMinute = (int) (scheduledAt / 60_000L);
+            int actualMinute = (int) (actualAt / 60_000L);
+            byte outcome = taken ? TAKEN : MISSED;
+            forUser(user).append(doseId, scheduledMinute, actualMinute, outcome);
+            synchronized (this) {
+                DataOutputStream out = new DataOutputStream(pending);
+                try {
+                    out.writeInt(user.getId());
+                    out.writeLong(doseId);
+                    out.writeInt(scheduledMinute);
+                    out.writeInt(actualMinute);
+                    out.writeByte(outcome);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        public Rate rollingRate(User user, int days, long now) {
+            int today = Math.floorDiv((int) (now / 60_000L), 24 * 60);
+            UserLog log = logs.get(user.getId());
+            return log == null ? new Rate(0, 0) : log.rate(today - days + 1, today);
+        }
+
+        public void load() throws IOException {
+            for (int number = 0; ; number++) {
+                File segment = segmentFile(number);
+                if (!segment.exists()) break;
+                segmentNumber = number;
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(segment), 64 * 1024))) {
+                    long records = segment.length() / RECORD_BYTES;
+                    for (long i = 0; i < records; i++) {
+                        int userId = in.readInt();
+                        long doseId = in.readLong();
+                        int scheduledMinute = in.readInt();
+                        int actualMinute = in.readInt();
+                        byte outcome = in.readByte();
+                        logs.computeIfAbsent(userId, k -> new UserLog())
+                                .append(doseId, scheduledMinute, actualMinute, outcome);
+                    }
+                }
+                truncateTornRecord(segment);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            byte[] bytes;
+            synchronized (this) {
+                if (pending.size() == 0) return;
+                bytes = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+            }
+            File segment = segmentFile(segmentNumber);
+            try {
+                if (truncateTornRecord(segment) >= segmentBytes) {
+                    segment = segmentFile(++segmentNumber);
+                }
+                try (FileOutputStream out = new FileOutputStream(segment, true)) {
+                    out.write(bytes);
+                }
+            } catch (IOException e) {
+                requeue(bytes);
+                throw e;
+            }
+            Metrics.BYTES_WRITTEN.add(bytes.length);
+        }
+
+        private synchronized void requeue(byte[] bytes) {
+            byte[] newer = pending.toByteArray();
+            pending = new ByteArrayOutputStream(bytes.length + newer.length);
+            pending.write(bytes, 0, bytes.length);
+            pending.write(newer, 0, newer.length);
+        }
+
+        
+        private static long truncateTornRecord(File segment) throws IOException {
+            long length = segment.length();
+            long valid = length / RECORD_BYTES * RECORD_BYTES;
+            if (length != valid) {
+                try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            return valid;
+        }
+
+        private File segmentFile(int number) {
+            return new File(directory, prefix + String.format("%03d", number));
+        }
+    }
+
+    
+    static class PersistenceWorker {
+        private static final long DEFAULT_COALESCE_MILLIS = 250L;
+
+        private final UserDataStore store;
+        private final long coalesceMillis;
+        private final Consumer<IOException> onError;
+        private final ScheduledExecutorService executor;
+        private List<String> pendingRecords = new ArrayList<>();
+        private UserDataStore.Snapshot pendingSnapshot;
+        private List<String> recordsAfterSnapshot = new ArrayList<>();
+        private final List<Flushable> companions = new CopyOnWriteArrayList<>();
+        private boolean snapshotCut;
+        private boolean flushScheduled;
+
+        public PersistenceWorker(UserDataStore store, Consumer<IOException> onError) {
+            this.store = store;
+            this.onError = onError;
+            this.coalesceMillis = Long.getLong("smr.save.coalesceMillis", DEFAULT_COALESCE_MILLIS);
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "persistence-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        
+        public boolean append(String record) {
+            synchronized (this) {
+                if (!snapshotCut) {
+                    pendingRecords.add(record);
+                } else {
+                    recordsAfterSnapshot.add(record);
+                }
+                scheduleFlush();
+            }
+            return store.recordChange();
+        }
+
+        
+        public boolean appendAll(List<String> records) {
+            synchronized (this) {
+                (snapshotCut ? recordsAfterSnapshot : pendingRecords).addAll(records);
+                scheduleFlush();
+            }
+            boolean compact = false;
+            for (int i = 0; i < records.size(); i++) {
+                compact |= store.recordChange();
+            }
+            return compact;
+        }
+
+        
+        public void compact(Lock lock, Supplier<List<User>> users) {
+            executor.execute(() -> {
+                List<User> copies = new ArrayList<>();
+                lock.lock();
+                try {
+                    for (User user : users.get()) {
+                        copies.add(user.snapshotCopy());
+                    }
+                    synchronized (this) {
+                        snapshotCut = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                UserDataStore.Snapshot snapshot;
+                try {
+                    snapshot = store.encode(copies);
+                } catch (IOException e) {
+                    synchronized (this) {
+                        pendingRecords.addAll(recordsAfterSnapshot);
+                        recordsAfterSnapshot = new ArrayList<>();
+                        snapshotCut = false;
+                    }
+                    onError.accept(e);
+                    return;
+                }
+                synchronized (this) {
+                    pendingSnapshot = snapshot;
+                }
+                flush();
+            });
+        }
+
+        
+        public void addCompanion(Flushable companion) {
+            companions.add(companion);
+        }
+
+        public synchronized void requestFlush() {
+            scheduleFlush();
+        }
+
+        private void scheduleFlush() {
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, coalesceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void flush() {
+            long start = Metrics.start();
+            List<String> records;
+            UserDataStore.Snapshot snapshot;
+            List<String> afterSnapshot;
+            synchronized (this) {
+                records = pendingRecords;
+                snapshot = pendingSnapshot;
+                afterSnapshot = snapshot != null ? recordsAfterSnapshot : Collections.<String>emptyList();
+                pendingRecords = new ArrayList<>();
+                pendingSnapshot = null;
+                if (snapshot != null) {
+                    recordsAfterSnapshot = new ArrayList<>();
+                    snapshotCut = false;
+                }
+                flushScheduled = false;
+            }
+            try {
+                if (!records.isEmpty()) store.appendToJournal(records);
+                if (snapshot != null) store.install(snapshot);
+                if (!afterSnapshot.isEmpty()) store.appendToJournal(afterSnapshot);
+            } catch (IOException e) {
+                onError.accept(e);
+            }
+            for (Flushable companion : companions) {
+                try {
+                    companion.flush();
+                } catch (IOException e) {
+                    onError.accept(e);
+                }
+            }
+            Metrics.SAVE.recordSince(start);
+        }
+
+        
+        public void close() {
+            try {
+                executor.submit(this::flush).get();
+                executor.shutdown();
+                if (store != null) store.close();
+            } catch (Exception e) {
+                onError.accept(e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+    }
+
+    static class MedicineIndex implements User.MedicineListener {
+        private static final int TRIGRAM = 3;
+
+        static class Hit {
+            final User user;
+            final Medicine medicine;
+
+            Hit(User user, Medicine medicine) {
+                this.user = user;
+                this.medicine = medicine;
+            }
+
+            @Override
+            public String toString() {
+                return medicine.getDetails() + " [" + user.getName() + "]";
+            }
+        }
+
+        
+        private final ConcurrentSkipListMap<String, Map<User, List<Medicine>>> byName = new ConcurrentSkipListMap<>();
+        private final Map<String, Set<String>> nameTrigrams = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<String, Map<User, List<Medicine>>> byTiming = new ConcurrentSkipListMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        @Override
+        public void medicineAdded(User user, Medicine medicine) {
+            String name = normalize(medicine.getName());
+            if (name != null && addPosting(byName, name, user, medicine)) {
+                synchronized (nameTrigrams) {
+                    for (int i = 0; i + TRIGRAM <= name.length(); i++) {
+                        nameTrigrams.computeIfAbsent(name.substring(i, i + TRIGRAM),
+                                k -> ConcurrentHashMap.newKeySet()).add(name);
+                    }
+                }
+            }
+            String timing = normalize(medicine.getTiming());
+            if (timing != null) {
+                addPosting(byTiming, timing, user, medicine);
+            }
+            if (name != null || timing != null) size.incrementAndGet();
+        }
+
+        @Override
+        public void medicineRemoved(User user, Medicine medicine) {
+            boolean removed = false;
+            String name = normalize(medicine.getName());
+            if (name != null && removePosting(byName, name, user, medicine)) {
+                removed = true;
+                synchronized (nameTrigrams) {
+                    if (!byName.containsKey(name)) {
+                        for (int i = 0; i + TRIGRAM <= name.length(); i++) {
+                            String trigram = name.substring(i, i + TRIGRAM);
+                            Set<String> names = nameTrigrams.get(trigram);
+                            if (names != null) {
+                                names.remove(name);
+                                if (names.isEmpty()) nameTrigrams.remove(trigram);
+                            }
+                        }
+                    }
+                }
+            }
+            String timing = normalize(medicine.getTiming());
+            if (timing != null && removePosting(byTiming, timing, user, medicine)) {
+                removed = true;
+            }
+            if (removed) size.decrementAndGet();
+        }
+
+        public int size() {
+            return size.get();
+        }
+
+        
+        public List<Hit> search(String query, User scope, boolean fuzzy, int limit) {
+            List<Hit> hits = new ArrayList<>();
+            String normalized = normalize(query);
+            if (normalized == null) return hits;
+
+            Set<Medicine> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            LinkedHashSet<String> names = new LinkedHashSet<>(
+                    byName.subMap(normalized, true, normalized + Character.MAX_VALUE, false).keySet());
+            names.addAll(namesContaining(normalized));
+            for (String name : names) {
+                if (!collect(byName.get(name), scope, hits, seen, limit)) return hits;
+            }
+
+            for (Map<User, List<Medicine>> postings : byTiming
+                    .subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+                if (!collect(postings, scope, hits, seen, limit)) return hits;
+            }
+
+            if (fuzzy) {
+                int maxDistance = normalized.length() <= 4 ? 1 : 2;
+                for (String name : fuzzyCandidates(normalized)) {
+                    if (names.contains(name)) continue;
+                    if (withinDistance(normalized, name, maxDistance)
+                            || (name.length() > normalized.length()
+                                && withinDistance(normalized, name.substring(0, normalized.length()), maxDistance))) {
+                        if (!collect(byName.get(name), scope, hits, seen, limit)) return hits;
+                    }
+                }
+            }
+            return hits;
+        }
+
+        private Collection<String> namesContaining(String query) {
+            if (query.length() < TRIGRAM) {
+                List<String> matches = new ArrayList<>();
+                for (String name : byName.keySet()) {
+                    if (name.contains(query)) matches.add(name);
+                }
+                return matches;
+            }
+
+            Set<String> smallest = null;
+            for (int i = 0; i + TRIGRAM <= query.length(); i++) {
+                Set<String> names = nameTrigrams.get(query.substring(i, i + TRIGRAM));
+                if (names == null) return Collections.emptyList();
+                if (smallest == null || names.size() < smallest.size()) smallest = names;
+            }
+            List<String> matches = new ArrayList<>();
+            for (String name : smallest) {
+                if (name.contains(query)) matches.add(name);
+            }
+            Collections.sort(matches);
+            return matches;
+        }
+
+        private Collection<String> fuzzyCandidates(String query) {
+            if (query.length() < TRIGRAM) return byName.keySet();
+            Set<String> candidates = new TreeSet<>();
+            for (int i = 0; i + TRIGRAM <= query.length(); i++) {
+                Set<String> names = nameTrigrams.get(query.substring(i, i + TRIGRAM));
+                if (names != null) candidates.addAll(names);
+            }
+            if (candidates.isEmpty()) return byName.keySet();
+            return candidates;
+        }
+
+        private static boolean collect(Map<User, List<Medicine>> postings, User scope,
+                                       List<Hit> hits, Set<Medicine> seen, int limit) {
+            if (postings == null) return true;
+            if (scope != null) {
+                return collect(scope, postings.get(scope), hits, seen, limit);
+            }
+            for (Map.Entry<User, List<Medicine>> entry : postings.entrySet()) {
+                if (!collect(entry.getKey(), entry.getValue(), hits, seen, limit)) return false;
+            }
+            return true;
+        }
+
+        private static boolean collect(User user, List<Medicine> medicines,
+                                       List<Hit> hits, Set<Medicine> seen, int limit) {
+            if (medicines == null) return true;
+            for (Medicine medicine : medicines) {
+                if (hits.size() >= limit) return false;
+                if (seen.add(medicine)) hits.add(new Hit(user, medicine));
+            }
+            return hits.size() < limit;
+        }
+
+        
+        private static boolean addPosting(Map<String, Map<User, List<Medicine>>> index,
+                                          String key, User user, Medicine medicine) {
+            while (true) {
+                boolean created = false;
+                Map<User, List<Medicine>> postings = index.get(key);
+                if (postings == null) {
+                    Map<User, List<Medicine>> fresh = new ConcurrentHashMap<>();
+                    postings = index.putIfAbsent(key, fresh);
+                    if (postings == null) {
+                        postings = fresh;
+                        created = true;
+                    }
+                }
+                synchronized (postings) {
+                    if (index.get(key) != postings) continue;
+                    postings.computeIfAbsent(user, k -> new CopyOnWriteArrayList<>()).add(medicine);
+                }
+                return created;
+            }
+        }
+
+        private static boolean removePosting(Map<String, Map<User, List<Medicine>>> index,
+                                             String key, User user, Medicine medicine) {
+            Map<User, List<Medicine>> postings = index.get(key);
+            if (postings == null) return false;
+            synchronized (postings) {
+                List<Medicine> medicines = postings.get(user);
+                if (medicines == null) return false;
+                boolean removed = false;
+                for (int i = 0; i < medicines.size(); i++) {
+                    if (medicines.get(i) == medicine) {
+                        medicines.remove(i);
+                        removed = true;
+                        break;
+                    }
+                }
+                if (medicines.isEmpty()) postings.remove(user);
+                if (postings.isEmpty()) index.remove(key, postings);
+                return removed;
+            }
+        }
+
+        static String normalize(String value) {
+            if (value == null) return null;
+            String trimmed = value.trim().toLowerCase(Locale.ROOT);
+            return trimmed.isEmpty() ? null : trimmed;
+        }
+
+        
+        static boolean withinDistance(String a, String b, int max) {
+            if (Math.abs(a.length() - b.length()) > max) return false;
+            int[] previous = new int[b.length() + 1];
+            int[] current = new int[b.length() + 1];
+            for (int j = 0; j <= b.length(); j++) previous[j] = j;
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                int rowMin = current[0];
+                for (int j = 1; j <= b.length(); j++) {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                if (rowMin > max) return false;
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[b.length()] <= max;
+        }
+    }
+
+    
+    static class ReminderScheduler {
+        private static final DateTimeFormatter DUE_FORMAT = DateTimeFormatter.ofPattern("d/M/yyyy H:mm");
+        static final long MISSED_AFTER_MILLIS = 60_000L;
+        private static final long DEFAULT_CATCH_UP_MINUTES = 60L;
+        private static final long DEFAULT_BACKFILL_DAYS = 7L;
+
+        enum Stage { DUE, MISSED, WAKE, OVERDUE }
+
+        static class Entry implements Comparable<Entry> {
+            final long dueAt;
+            final long fireAt;
+            final long sequence;
+            final Stage stage;
+            final User user;
+            final Medicine medicine;
+
+            Entry(long dueAt, long fireAt, long sequence, Stage stage, User user, Medicine medicine) {
+                this.dueAt = dueAt;
+                this.fireAt = fireAt;
+                this.sequence = sequence;
+                this.stage = stage;
+                this.user = user;
+                this.medicine = medicine;
+            }
+
+            @Override
+            public int compareTo(Entry other) {
+                int byTime = Long.compare(fireAt, other.fireAt);
+                return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+            }
+        }
+
+        private final TreeSet<Entry> queue = new TreeSet<>();
+        private final Map<Medicine, Entry> entries = new IdentityHashMap<>();
+        private final Map<User, Entry> wakes = new IdentityHashMap<>();
+        private final Map<Medicine, Long> backfilled = new IdentityHashMap<>();
+        private final Clock clock;
+        private final long catchUpMillis;
+        private final long backfillMillis = TimeUnit.DAYS.toMillis(Long.getLong("smr.reminders.backfillDays", DEFAULT_BACKFILL_DAYS));
+        private long nextSequence;
+
+        public ReminderScheduler() {
+            this(Clock.systemDefaultZone());
+        }
+
+        public ReminderScheduler(Clock clock) {
+            this(clock, TimeUnit.MINUTES.toMillis(Long.getLong("smr.reminders.catchUpMinutes", DEFAULT_CATCH_UP_MINUTES)));
+        }
+
+        
+        public ReminderScheduler(Clock clock, long catchUpMillis) {
+            this.clock = clock;
+            this.catchUpMillis = catchUpMillis;
+        }
+
+        public static long dueAt(Medicine medicine) {
+            return medicine.dueAt();
+        }
+
+        static long dueAt(String date, String timing) {
+            if (date == null || timing == null) return -1;
+            try {
+                return LocalDateTime.parse(date + " " + timing, DUE_FORMAT)
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return -1;
+            }
+        }
+
+        public void scheduleAll(User user) {
+            cancelWake(user);
+            for (Medicine medicine : user.getMedicines()) {
+                schedule(user, medicine);
+            }
+        }
+
+        public void schedule(User user, Medicine medicine) {
+            long from = clock.millis() - Math.max(MISSED_AFTER_MILLIS, catchUpMillis);
+            backfill(user, medicine, from);
+            scheduleFrom(user, medicine, from);
+        }
+
+        
+        private void backfill(User user, Medicine medicine, long before) {
+            long start = medicine.startAt();
+            if (!medicine.isRecurring() || start < 0) return;
+            Long done = backfilled.put(medicine, before);
+            long from = Math.max(start, before - backfillMillis);
+            if (done != null) from = Math.max(from, done);
+            if (from >= before) return;
+            long now = clock.millis();
+            medicine.getRecurrence().forEachOccurrence(start, from, before, occurrence -> {
+                if (!medicine.hasOutcomeAt(occurrence)) {
+                    queue.add(new Entry(occurrence, now, nextSequence++, Stage.OVERDUE, user, medicine));
+                }
+            });
+        }
+
+        
+        public long nextDue(List<Medicine> medicines) {
+            long from = clock.millis() - Math.max(MISSED_AFTER_MILLIS, catchUpMillis);
+            long next = -1;
+            for (Medicine medicine : medicines) {
+                long due = medicine.nextPendingOccurrence(from);
+                if (due >= from && (next < 0 || due < next)) next = due;
+            }
+            return next;
+        }
+
+        
+        public void scheduleWake(User user, long at) {
+            cancelWake(user);
+            if (at < 0) return;
+            Entry entry = new Entry(at, at, nextSequence++, Stage.WAKE, user, null);
+            wakes.put(user, entry);
+            queue.add(entry);
+        }
+
+        private void cancelWake(User user) {
+            Entry entry = wakes.remove(user);
+            if (entry != null) queue.remove(entry);
+        }
+
+        private void scheduleFrom(User user, Medicine medicine, long from) {
+            unqueue(medicine);
+            long dueAt = medicine.nextPendingOccurrence(from);
+            if (dueAt < 0) return;
+            add(new Entry(dueAt, dueAt, nextSequence++, Stage.DUE, user, medicine));
+        }
+
+        public void cancel(Medicine medicine) {
+            unqueue(medicine);
+            backfilled.remove(medicine);
+        }
+
+        private void unqueue(Medicine medicine) {
+            Entry entry = entries.remove(medicine);
+            if (entry != null) queue.remove(entry);
+        }
+
+        public void cancelAll(User user) {
+            for (Medicine medicine : user.getMedicines()) {
+                cancel(medicine);
+            }
+        }
+
+        public int size() {
+            return queue.size();
+        }
+
+        public long nextFireAt() {
+            return queue.isEmpty() ? Long.MAX_VALUE : queue.first().fireAt;
+        }
+
+        public List<Entry> upcoming(long until, int limit) {
+            List<Entry> upcoming = new ArrayList<>();
+            for (Entry entry : queue) {
+                if (entry.fireAt > until || upcoming.size() >= limit) break;
+                if (entry.stage == Stage.DUE) upcoming.add(entry);
+            }
+            return upcoming;
+        }
+
+        
+        public List<Entry> pollDue(long now) {
+            List<Entry> fired = new ArrayList<>();
+            while (!queue.isEmpty() && queue.first().fireAt <= now) {
+                Entry entry = queue.pollFirst();
+                if (entry.stage == Stage.WAKE) {
+                    wakes.remove(entry.user);
+                    fired.add(entry);
+                    continue;
+                }
+                if (entry.stage == Stage.OVERDUE) {
+                    fired.add(entry);
+                    continue;
+                }
+                entries.remove(entry.medicine);
+                if (entry.stage == Stage.DUE) {
+                    long missedAt = entry.dueAt + MISSED_AFTER_MILLIS;
+                    if (missedAt > now) {
+                        fired.add(entry);
+                    } else if (now - entry.dueAt <= catchUpMillis) {
+                        fired.add(entry);
+                        missedAt = now + MISSED_AFTER_MILLIS;
+                    } else {
+                        fired.add(new Entry(entry.dueAt, entry.fireAt, entry.sequence,
+                                Stage.OVERDUE, entry.user, entry.medicine));
+                        if (entry.medicine.isRecurring()) {
+                            scheduleFrom(entry.user, entry.medicine, entry.dueAt + 1);
+                        }
+                        continue;
+                    }
+                    add(new Entry(entry.dueAt, Math.max(missedAt, now), nextSequence++,
+                            Stage.MISSED, entry.user, entry.medicine));
+                } else {
+                    fired.add(entry);
+                    if (entry.medicine.isRecurring()) {
+                        scheduleFrom(entry.user, entry.medicine, entry.dueAt + 1);
+                    }
+                }
+            }
+            return fired;
+        }
+
+        private void add(Entry entry) {
+            entries.put(entry.medicine, entry);
+            queue.add(entry);
+        }
+    }
+
+    
+    static class ReminderEvent {
+        final ReminderScheduler.Stage stage;
+        final User user;
+        final Medicine medicine;
+        final long dueAt;
+        final long firedAt;
+
+        ReminderEvent(ReminderScheduler.Entry entry, long firedAt) {
+            this.stage = entry.stage;
+            this.user = entry.user;
+            this.medicine = entry.medicine;
+            this.dueAt = entry.dueAt;
+            this.firedAt = firedAt;
+        }
+
+        @Override
+        public String toString() {
+            String time = new SimpleDateFormat("HH:mm").format(new Date(dueAt));
+            return (stage == ReminderScheduler.Stage.DUE ? "Time to take " : "Missed ")
+                    + medicine.getName() + " (" + user.getName() + ", " + time + ")";
+        }
+    }
+
+    
+    static class ReminderEngine {
+        private static final long DEFAULT_MAX_SLEEP_MILLIS = 5_000L;
+        private static final long WAKE_RETRY_MILLIS = 60_000L;
+
+        private final ReminderScheduler scheduler;
+        private final Queue<ReminderEvent> events = new ConcurrentLinkedQueue<>();
+        private final ScheduledExecutorService executor;
+        private final Runnable onEvents;
+        private final Consumer<List<ReminderScheduler.Entry>> onOverdue;
+        private final Clock clock;
+        private final long maxSleepMillis = Long.getLong("smr.reminders.maxSleepMillis", DEFAULT_MAX_SLEEP_MILLIS);
+        private ScheduledFuture<?> wakeUp;
+
+        public ReminderEngine(Runnable onEvents) {
+            this(onEvents, Clock.systemDefaultZone());
+        }
+
+        public ReminderEngine(Runnable onEvents, Clock clock) {
+            this(onEvents, overdue -> { }, clock);
+        }
+
+        
+        public ReminderEngine(Runnable onEvents, Consumer<List<ReminderScheduler.Entry>> onOverdue, Clock clock) {
+            this.onEvents = onEvents;
+            this.onOverdue = onOverdue;
+            this.clock = clock;
+            this.scheduler = new ReminderScheduler(clock);
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "reminder-engine");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        public void start(List<User> users) {
+            List<User> snapshot = new ArrayList<>(users);
+            executor.execute(() -> {
+                long now = clock.millis();
+                for (User user : snapshot) {
+                    if (user.isLoaded()) {
+                        synchronized (user) {
+                            synchronized (this) {
+                                scheduler.scheduleAll(user);
+                            }
+                        }
+                    } else {
+                        long due = user.nextDue();
+                        if (due == User.DUE_UNKNOWN) {
+                            List<Medicine> medicines = user.peekMedicines();
+                            due = medicines != null ? scheduler.nextDue(medicines) : now;
+                        }
+                        synchronized (this) {
+                            scheduler.scheduleWake(user, due);
+                        }
+                    }
+                }
+                fire();
+            });
+        }
+
+        public synchronized void schedule(User user, Medicine medicine) {
+            scheduler.schedule(user, medicine);
+            rearm();
+        }
+
+        public synchronized void schedule(User user, List<Medicine> medicines) {
+            for (Medicine medicine : medicines) {
+                scheduler.schedule(user, medicine);
+            }
+            rearm();
+        }
+
+        public synchronized void cancel(Medicine medicine) {
+            scheduler.cancel(medicine);
+        }
+
+        public synchronized void scheduleAll(User user) {
+            scheduler.scheduleAll(user);
+            rearm();
+        }
+
+        public synchronized void cancelAll(User user) {
+            scheduler.cancelAll(user);
+        }
+
+        public synchronized void scheduleWake(User user, long at) {
+            scheduler.scheduleWake(user, at);
+            rearm();
+        }
+
+        public long nextDue(User user) {
+            return scheduler.nextDue(user.getMedicines());
+        }
+
+        public synchronized List<ReminderScheduler.Entry> upcoming(long until, int limit) {
+            return scheduler.upcoming(until, limit);
+        }
+
+        public Queue<ReminderEvent> events() {
+            return events;
+        }
+
+        public void shutdown() {
+            executor.shutdownNow();
+        }
+
+        
+        public void checkNow() {
+            try {
+                executor.submit(this::fire).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        private void fire() {
+            long start = Metrics.start();
+            long now = clock.millis();
+            List<ReminderScheduler.Entry> due;
+            synchronized (this) {
+                due = scheduler.pollDue(now);
+                rearm();
+            }
+            if (due.isEmpty()) return;
+            boolean reminders = false;
+            List<ReminderScheduler.Entry> overdue = new ArrayList<>();
+            for (ReminderScheduler.Entry entry : due) {
+                if (entry.stage == ReminderScheduler.Stage.WAKE) {
+                    wake(entry.user, now);
+                    continue;
+                }
+                if (entry.stage == ReminderScheduler.Stage.OVERDUE) {
+                    overdue.add(entry);
+                    continue;
+                }
+                reminders = true;
+                if (!entry.medicine.isTakenAt(entry.dueAt)) {
+                    events.offer(new ReminderEvent(entry, now));
+                    Metrics.REMINDERS_FIRED.increment();
+                    Metrics.REMINDER_LATENESS.recordMillis(now - entry.fireAt);
+                }
+            }
+            if (!overdue.isEmpty()) onOverdue.accept(overdue);
+            if (reminders) onEvents.run();
+            Metrics.CHECK_REMINDERS.recordSince(start);
+        }
+
+        
+        private void wake(User user, long now) {
+            try {
+                user.ensureLoaded();
+            } catch (RuntimeException e) {
+                scheduleWake(user, now + WAKE_RETRY_MILLIS);
+                return;
+            }
+            synchronized (user) {
+                synchronized (this) {
+                    scheduler.scheduleAll(user);
+                    rearm();
+                }
+            }
+        }
+
+        private void rearm() {
+            if (executor.isShutdown()) return;
+            long delay = Math.max(0, Math.min(scheduler.nextFireAt() - clock.millis(), maxSleepMillis));
+            if (wakeUp != null) {
+                if (wakeUp.getDelay(TimeUnit.MILLISECONDS) <= delay && !wakeUp.isDone()) return;
+                wakeUp.cancel(false);
+            }
+            wakeUp = executor.schedule(this::fire, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    
+    static class ReminderLatency {
+        private static final int WINDOW = 128;
+        private static final long DEFAULT_SLO_MILLIS = 1_000L;
+
+        
+        static class Window {
+            private final int[] samples = new int[WINDOW];
+            private long count;
+            private long violations;
+            private int max;
+
+            synchronized void add(int millis, boolean violation) {
+                samples[(int) (count++ % WINDOW)] = millis;
+                if (violation) violations++;
+                max = Math.max(max, millis);
+            }
+
+            public synchronized long getCount() {
+                return count;
+            }
+
+            public synchronized long getViolations() {
+                return violations;
+            }
+
+            public synchronized int getMax() {
+                return max;
+            }
+
+            public synchronized int percentile(double percentile) {
+                int size = (int) Math.min(count, WINDOW);
+                if (size == 0) return 0;
+                int[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                return sorted[Math.min(size - 1, (int) Math.ceil(size * percentile / 100.0) - 1)];
+            }
+        }
+
+        private final long sloMillis;
+        private final Map<User, Window> windows = new ConcurrentHashMap<>();
+
+        public ReminderLatency() {
+            this(Long.getLong("smr.reminders.sloMillis", DEFAULT_SLO_MILLIS));
+        }
+
+        public ReminderLatency(long sloMillis) {
+            this.sloMillis = sloMillis;
+        }
+
+        public long getSloMillis() {
+            return sloMillis;
+        }
+
+        public long record(User user, long dueAt, long deliveredAt) {
+            long lateness = Math.max(0, deliveredAt - dueAt);
+            windows.computeIfAbsent(user, u -> new Window())
+                    .add((int) Math.min(lateness, Integer.MAX_VALUE), lateness > sloMillis);
+            Metrics.REMINDER_DELIVERY.recordMillis(lateness);
+            return lateness;
+        }
+
+        public Window forUser(User user) {
+            return windows.get(user);
+        }
+
+        public Map<User, Window> windows() {
+            return Collections.unmodifiableMap(windows);
+        }
+    }
+
+    
+    static class Metrics {
+        static final boolean ENABLED = !"false".equals(System.getProperty("smr.metrics"));
+        private static final String DOMAIN = "SmartMedicineReminder";
+        private static final long DEFAULT_DUMP_SECONDS = 60L;
+
+        public interface HistogramMXBean {
+            long getCount();
+            double getMeanMillis();
+            double getP50Millis();
+            double getP90Millis();
+            double getP99Millis();
+            double getMaxMillis();
+            void reset();
+        }
+
+        public interface CountersMXBean {
+            long getRemindersFired();
+            long getDosesMissed();
+            long getBytesWritten();
+            long getUsersLoaded();
+        }
+
+        
+        static class Histogram implements HistogramMXBean {
+            private static final int SUB_BITS = 3;
+            private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+            private final String name;
+            private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+            private final LongAdder sum = new LongAdder();
+            private final AtomicLong max = new AtomicLong();
+
+            Histogram(String name) {
+                this.name = name;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public void recordSince(long startNanos) {
+                if (!ENABLED) return;
+                record(System.nanoTime() - startNanos);
+            }
+
+            public void recordMillis(long millis) {
+                if (!ENABLED) return;
+                record(TimeUnit.MILLISECONDS.toNanos(millis));
+            }
+
+            public void record(long nanos) {
+                long value = Math.max(0, nanos);
+                buckets.incrementAndGet(bucket(value));
+                sum.add(value);
+                max.accumulateAndGet(value, Math::max);
+            }
+
+            static int bucket(long value) {
+                if (value < SUB_BUCKETS) return (int) value;
+                int exponent = 63 - Long.numberOfLeadingZeros(value);
+                int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+                return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+            }
+
+            static long upperBound(int bucket) {
+                if (bucket < SUB_BUCKETS) return bucket;
+                int shift = bucket / SUB_BUCKETS - 1;
+                long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+                return lower + (1L << shift) - 1;
+            }
+
+            @Override
+            public long getCount() {
+                long count = 0;
+                for (int i = 0; i < buckets.length(); i++) {
+                    count += buckets.get(i);
+                }
+                return count;
+            }
+
+            
+            public long percentileNanos(double percentile) {
+                long[] counts = new long[buckets.length()];
+                long total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = buckets.get(i);
+                    total += counts[i];
+                }
+                if (total == 0) return 0;
+                long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+                long seen = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    seen += counts[i];
+                    if (seen >= target) return Math.min(upperBound(i), max.get());
+                }
+                return max.get();
+            }
+
+            @Override
+            public double getMeanMillis() {
+                long count = getCount();
+                return count == 0 ? 0 : sum.sum() / (double) count / 1_000_000.0;
+            }
+
+            @Override
+            public double getP50Millis() {
+                return percentileNanos(50) / 1_000_000.0;
+            }
+
+            @Override
+            public double getP90Millis() {
+                return percentileNanos(90) / 1_000_000.0;
+            }
+
+            @Override
+            public double getP99Millis() {
+                return percentileNanos(99) / 1_000_000.0;
+            }
+
+            @Override
+            public double getMaxMillis() {
+                return max.get() / 1_000_000.0;
+            }
+
+            @Override
+            public void reset() {
+                for (int i = 0; i < buckets.length(); i++) {
+                    buckets.set(i, 0);
+                }
+                sum.reset();
+                max.set(0);
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.ROOT, "%s count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                        name, getCount(), getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getMaxMillis());
+            }
+        }
+
+        static class Counter {
+            private final LongAdder value = new LongAdder();
+
+            public void increment() {
+                if (ENABLED) value.increment();
+            }
+
+            public void add(long amount) {
+                if (ENABLED) value.add(amount);
+            }
+
+            public long get() {
+                return value.sum();
+            }
+        }
+
+        static final Histogram LOAD = new Histogram("load");
+        static final Histogram SAVE = new Histogram("save");
+        static final Histogram CHECK_REMINDERS = new Histogram("checkReminders");
+        static final Histogram SEARCH = new Histogram("search");
+        static final Histogram REMINDER_LATENESS = new Histogram("reminderLateness");
+        static final Histogram REMINDER_DELIVERY = new Histogram("reminderDelivery");
+        static final Counter REMINDERS_FIRED = new Counter();
+        static final Counter DOSES_MISSED = new Counter();
+        static final Counter BYTES_WRITTEN = new Counter();
+        static final Counter USERS_LOADED = new Counter();
+
+        private static final CountersMXBean COUNTERS = new CountersMXBean() {
+            @Override
+            public long getRemindersFired() {
+                return REMINDERS_FIRED.get();
+            }
+
+            @Override
+            public long getDosesMissed() {
+                return DOSES_MISSED.get();
+            }
+
+            @Override
+            public long getBytesWritten() {
+                return BYTES_WRITTEN.get();
+            }
+
+            @Override
+            public long getUsersLoaded() {
+                return USERS_LOADED.get();
+            }
+        };
+
+        private static boolean started;
+
+        private Metrics() {
+        }
+
+        public static long start() {
+            return ENABLED ? System.nanoTime() : 0L;
+        }
+
+        public static List<Histogram> histograms() {
+            return Arrays.asList(LOAD, SAVE, CHECK_REMINDERS, SEARCH, REMINDER_LATENESS, REMINDER_DELIVERY);
+        }
+
+        
+        public static synchronized void register() {
+            if (!ENABLED || started) return;
+            started = true;
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                for (Histogram histogram : histograms()) {
+                    server.registerMBean(histogram, new ObjectName(DOMAIN + ":type=Histogram,name=" + histogram.getName()));
+                }
+                server.registerMBean(COUNTERS, new ObjectName(DOMAIN + ":type=Counters"));
+            } catch (JMException e) {
+                System.err.println("Error registering metrics MBeans: " + e.getMessage());
+            }
+            String dumpFile = System.getProperty("smr.metrics.dumpFile");
+            if (dumpFile != null) {
+                long seconds = Long.getLong("smr.metrics.dumpSeconds", DEFAULT_DUMP_SECONDS);
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "metrics-dump");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleAtFixedRate(() -> dump(new File(dumpFile)), seconds, seconds, TimeUnit.SECONDS);
+            }
+        }
+
+        public static String format() {
+            StringBuilder sb = new StringBuilder();
+            String now = Instant.now().toString();
+            sb.append(now).append(" counters remindersFired=").append(REMINDERS_FIRED.get())
+                    .append(" dosesMissed=").append(DOSES_MISSED.get())
+                    .append(" bytesWritten=").append(BYTES_WRITTEN.get())
+                    .append(" usersLoaded=").append(USERS_LOADED.get()).append('\n');
+            for (Histogram histogram : histograms()) {
+                sb.append(now).append(' ').append(histogram).append('\n');
+            }
+            return sb.toString();
+        }
+
+        private static void dump(File file) {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                out.write(format());
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    
+    static class ReminderCore {
+        static class DuplicateUserException extends IllegalArgumentException {
+            private static final long serialVersionUID = 1L;
+
+            DuplicateUserException(String message) {
+                super(message);
+            }
+        }
+
+        private final UserRegistry users = new UserRegistry();
+        private final UserDataStore store;
+        private final ShardedStore shards;
+        private final PersistenceWorker persistenceWorker;
+        private final AdherenceLog adherenceLog;
+        private final MedicineIndex medicineIndex = new MedicineIndex();
+        private final ReminderEngine reminderEngine;
+        private final ReminderLatency reminderLatency = new ReminderLatency();
+        private final Clock clock;
+        private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+        public ReminderCore(String dataFile, Consumer<IOException> onSaveError, Runnable onEvents) {
+            this(dataFile, onSaveError, onEvents, Clock.systemDefaultZone());
+        }
+
+        public ReminderCore(String dataFile, Consumer<IOException> onSaveError, Runnable onEvents, Clock clock) {
+            this.clock = clock;
+            if ("sharded".equals(System.getProperty("smr.storage"))) {
+                store = null;
+                shards = new ShardedStore(dataFile);
+            } else {
+                store = UserDataStore.create(dataFile);
+                shards = null;
+            }
+            persistenceWorker = new PersistenceWorker(store, onSaveError);
+            adherenceLog = new AdherenceLog(dataFile);
+            persistenceWorker.addCompanion(adherenceLog);
+            reminderEngine = new ReminderEngine(onEvents, this::recordOverdue, clock);
+            Metrics.register();
+            if (shards != null) {
+                persistenceWorker.addCompanion(shards);
+                shards.setResidencyListener(new ShardedStore.ResidencyListener() {
+                    @Override
+                    public void userLoaded(User user) {
+                        reminderEngine.scheduleAll(user);
+                        persistenceWorker.requestFlush();
+                    }
+
+                    @Override
+                    public void userEvicted(User user) {
+                        reminderEngine.cancelAll(user);
+                        reminderEngine.scheduleWake(user, user.nextDue());
+                    }
+
+                    @Override
+                    public long nextDue(User user) {
+                        return reminderEngine.nextDue(user);
+                    }
+
+                    @Override
+                    public boolean canEvict(User user) {
+                        long due = reminderEngine.nextDue(user);
+                        return due < 0 || due - clock.millis() > ReminderScheduler.MISSED_AFTER_MILLIS;
+                    }
+                });
+            }
+        }
+
+        public void load() throws IOException {
+            long start = Metrics.start();
+            for (User user : shards != null ? shards.load() : store.load()) {
+                users.register(user);
+                user.setMedicineListener(medicineIndex);
+            }
+            if (shards == null) Metrics.USERS_LOADED.add(users.size());
+            adherenceLog.load();
+            Metrics.LOAD.recordSince(start);
+        }
+
+        
+        public void start() {
+            reminderEngine.start(users.snapshot());
+        }
+
+        public UserRegistry users() {
+            return users;
+        }
+
+        public MedicineIndex medicineIndex() {
+            return medicineIndex;
+        }
+
+        public AdherenceLog adherenceLog() {
+            return adherenceLog;
+        }
+
+        public Queue<ReminderEvent> events() {
+            return reminderEngine.events();
+        }
+
+        public Clock clock() {
+            return clock;
+        }
+
+        public ReminderLatency reminderLatency() {
+            return reminderLatency;
+        }
+
+        public ReportEngine reports() {
+            return new ReportEngine(adherenceLog, clock);
+        }
+
+        
+        public long reminderDelivered(ReminderEvent event) {
+            if (event.stage != ReminderScheduler.Stage.DUE) return 0;
+            return reminderLatency.record(event.user, event.dueAt, clock.millis());
+        }
+
+        public void checkReminders() {
+            reminderEngine.checkNow();
+        }
+
+        public User addUser(String name, int age) {
+            User user = new User(name, age);
+            commit(users, user, () -> {
+                if (users.registerIfAbsent(user) == null) {
+                    throw new DuplicateUserException("A user named " + name + " already exists!");
+                }
+                if (shards != null) shards.userAdded(user);
+                user.setMedicineListener(medicineIndex);
+                return Journal.addUser(user);
+            });
+            return user;
+        }
+
+        public void addMedicine(User user, Medicine medicine) {
+            commit(user, user, () -> {
+                user.addMedicine(medicine);
+                return Journal.addMedicine(user.getId(), medicine);
+            });
+            reminderEngine.schedule(user, medicine);
+        }
+
+        public void removeMedicine(User user, Medicine medicine) {
+            commit(user, user, () -> {
+                int medicineIndex = user.getMedicines().indexOf(medicine);
+                if (medicineIndex < 0) return null;
+                user.removeMedicine(medicine);
+                return Journal.removeMedicine(user.getId(), medicineIndex);
+            });
+            reminderEngine.cancel(medicine);
+        }
+
+        public void addHealthRecord(User user, HealthRecord record) {
+            commit(user, user, () -> {
+                user.addHealthRecord(record);
+                return Journal.addHealthRecord(user.getId(), record);
+            });
+        }
+
+        public void recordOutcome(User user, Medicine medicine, long occurrenceAt, boolean taken) {
+            boolean recorded = commit(user, user, () -> markOutcome(user, medicine, occurrenceAt, taken));
+            if (!recorded) return;
+            if (!taken) Metrics.DOSES_MISSED.increment();
+            reminderEngine.schedule(user, medicine);
+        }
+
+        
+        private void recordOverdue(List<ReminderScheduler.Entry> overdue) {
+            List<String> records = new ArrayList<>();
+            int missed = 0;
+            boolean compact = false;
+            snapshotLock.readLock().lock();
+            try {
+                for (ReminderScheduler.Entry entry : overdue) {
+                    synchronized (entry.user) {
+                        if (entry.medicine.hasOutcomeAt(entry.dueAt)) continue;
+                        String record = markOutcome(entry.user, entry.medicine, entry.dueAt, false);
+                        if (record == null) continue;
+                        missed++;
+                        if (shards != null) {
+                            shards.markDirty(entry.user);
+                        } else {
+                            records.add(record);
+                        }
+                    }
+                }
+                if (!records.isEmpty()) compact = persistenceWorker.appendAll(records);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            if (shards != null && missed > 0) persistenceWorker.requestFlush();
+            if (compact) persistenceWorker.compact(snapshotLock.writeLock(), users::asList);
+            Metrics.DOSES_MISSED.add(missed);
+        }
+
+        private String markOutcome(User user, Medicine medicine, long occurrenceAt, boolean taken) {
+            int medicineIndex = user.getMedicines().indexOf(medicine);
+            if (medicineIndex < 0) return null;
+            if (medicine.hasOutcomeAt(occurrenceAt) && medicine.isTakenAt(occurrenceAt) == taken) return null;
+            medicine.markOccurrence(occurrenceAt, taken);
+            adherenceLog.record(user, medicine, occurrenceAt, clock.millis(), taken);
+            if (medicine.isRecurring()) {
+                return Journal.markOccurrence(user.getId(), medicineIndex, occurrenceAt, taken);
+            }
+            return taken ? Journal.markTaken(user.getId(), medicineIndex) : Journal.markMissed(user.getId(), medicineIndex);
+        }
+
+        
+        public int importBatch(List<BulkTransfer.Row> rows) {
+            int created = 0;
+            Map<User, List<Medicine>> added = new LinkedHashMap<>();
+            List<String> records = new ArrayList<>();
+            snapshotLock.writeLock().lock();
+            try {
+                for (BulkTransfer.Row row : rows) {
+                    User user = users.byName(row.user);
+                    if (user == null) {
+                        user = new User(row.user, row.age);
+                        users.register(user);
+                        if (shards != null) shards.userAdded(user);
+                        user.setMedicineListener(medicineIndex);
+                        if (shards == null) records.add(Journal.addUser(user));
+                        created++;
+                    }
+                    List<Medicine> medicines = added.computeIfAbsent(user, u -> new ArrayList<>());
+                    if (row.medicine != null) medicines.add(row.medicine);
+                }
+                for (Map.Entry<User, List<Medicine>> entry : added.entrySet()) {
+                    User user = entry.getKey();
+                    user.addMedicines(entry.getValue());
+                    if (shards != null) {
+                        shards.markDirty(user);
+                    } else {
+                        for (Medicine medicine : entry.getValue()) {
+                            records.add(Journal.addMedicine(user.getId(), medicine));
+                        }
+                    }
+                }
+                if (!records.isEmpty()) persistenceWorker.appendAll(records);
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+            for (Map.Entry<User, List<Medicine>> entry : added.entrySet()) {
+                if (!entry.getValue().isEmpty()) reminderEngine.schedule(entry.getKey(), entry.getValue());
+            }
+            return created;
+        }
+
+        
+        public void commitImport() {
+            if (shards != null) {
+                persistenceWorker.requestFlush();
+                return;
+            }
+            persistenceWorker.compact(snapshotLock.writeLock(), users::asList);
+        }
+
+        public List<MedicineIndex.Hit> search(String query, User scope, boolean fuzzy, int limit) {
+            long start = Metrics.start();
+            List<MedicineIndex.Hit> hits = medicineIndex.search(query, scope, fuzzy, limit);
+            Metrics.SEARCH.recordSince(start);
+            return hits;
+        }
+
+        public List<ReminderScheduler.Entry> upcoming(long until, int limit) {
+            return reminderEngine.upcoming(until, limit);
+        }
+
+        public void close() {
+            reminderEngine.shutdown();
+            persistenceWorker.close();
+        }
+
+        
+        private boolean commit(Object lock, User user, Supplier<String> change) {
+            String record;
+            boolean compact = false;
+            snapshotLock.readLock().lock();
+            try {
+                synchronized (lock) {
+                    record = change.get();
+                    if (record != null && shards != null) {
+                        shards.markDirty(user);
+                        persistenceWorker.requestFlush();
+                    } else if (record != null) {
+                        compact = persistenceWorker.append(record);
+                    }
+                }
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            if (compact) {
+                persistenceWorker.compact(snapshotLock.writeLock(), users::asList);
+            }
+            return record != null;
+        }
+    }
+
+    
+    static class BulkTransfer {
+        static final String[] COLUMNS = {"user", "age", "name", "dosage", "strength", "timing", "date", "repeat"};
+        private static final int DEFAULT_BATCH_SIZE = 20_000;
+
+        static class Row {
+            final int line;
+            final String user;
+            final int age;
+            final Medicine medicine;
+            final String error;
+
+            Row(int line, String user, int age, Medicine medicine) {
+                this.line = line;
+                this.user = user;
+                this.age = age;
+                this.medicine = medicine;
+                this.error = null;
+            }
+
+            Row(int line, String error) {
+                this.line = line;
+                this.user = null;
+                this.age = 0;
+                this.medicine = null;
+                this.error = error;
+            }
+        }
+
+        static class Result {
+            int rows;
+            int users;
+            int medicines;
+            int rejected;
+
+            @Override
+            public String toString() {
+                return rows + " rows: " + users + " new users, " + medicines + " medicines, " + rejected + " rejected";
+            }
+        }
+
+        private final ReminderCore core;
+        private final Consumer<String> onError;
+        private final int batchSize;
+        private final int parallelism;
+
+        public BulkTransfer(ReminderCore core, Consumer<String> onError) {
+            this(core, onError, Integer.getInteger("smr.import.batchSize", DEFAULT_BATCH_SIZE),
+                    Runtime.getRuntime().availableProcessors());
+        }
+
+        public BulkTransfer(ReminderCore core, Consumer<String> onError, int batchSize, int parallelism) {
+            this.core = core;
+            this.onError = onError;
+            this.batchSize = batchSize;
+            this.parallelism = parallelism;
+        }
+
+        
+        public Result importFile(File file) throws IOException {
+            boolean jsonl = file.getName().toLowerCase(Locale.ROOT).endsWith(".jsonl");
+            Result result = new Result();
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                int[] columns = null;
+                int lineNumber = 0;
+                if (!jsonl) {
+                    String header = reader.readLine();
+                    lineNumber++;
+                    if (header == null) return result;
+                    columns = columns(parseCsv(header.startsWith("\uFEFF") ? header.substring(1) : header));
+                }
+                List<String> lines = new ArrayList<>(batchSize);
+                int firstLine = lineNumber + 1;
+                String line;
+                while (true) {
+                    line = reader.readLine();
+                    if (line != null) {
+                        lines.add(line);
+                        if (lines.size() < batchSize) continue;
+                    }
+                    if (!lines.isEmpty()) {
+                        apply(validate(pool, lines, firstLine, columns), result);
+                        firstLine += lines.size();
+                        lines = new ArrayList<>(batchSize);
+                    }
+                    if (line == null) break;
+                }
+            } finally {
+                pool.shutdown();
+                core.commitImport();
+            }
+            return result;
+        }
+
+        private List<Row> validate(ForkJoinPool pool, List<String> lines, int firstLine, int[] columns) throws IOException {
+            int chunk = Math.max(1, (lines.size() + parallelism - 1) / parallelism);
+            List<ForkJoinTask<List<Row>>> tasks = new ArrayList<>();
+            for (int start = 0; start < lines.size(); start += chunk) {
+                int from = start;
+                int to = Math.min(lines.size(), start + chunk);
+                tasks.add(pool.submit(() -> {
+                    List<Row> rows = new ArrayList<>(to - from);
+                    for (int i = from; i < to; i++) {
+                        String text = lines.get(i);
+                        if (text.trim().isEmpty()) continue;
+                        rows.add(parseRow(firstLine + i, text, columns));
+                    }
+                    return rows;
+                }));
+            }
+            List<Row> rows = new ArrayList<>(lines.size());
+            try {
+                for (ForkJoinTask<List<Row>> task : tasks) {
+                    rows.addAll(task.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while importing");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            return rows;
+        }
+
+        private void apply(List<Row> rows, Result result) {
+            List<Row> valid = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                result.rows++;
+                if (row.error != null) {
+                    result.rejected++;
+                    onError.accept("line " + row.line + ": " + row.error);
+                } else {
+                    valid.add(row);
+                    if (row.medicine != null) result.medicines++;
+                }
+            }
+            result.users += core.importBatch(valid);
+        }
+
+        static Row parseRow(int line, String text, int[] columns) {
+            try {
+                Map<String, String> fields = new HashMap<>();
+                if (columns == null) {
+                    ApiServer.parseObject(text.trim(), fields);
+                } else {
+                    List<String> values = parseCsv(text);
+                    for (int i = 0; i < values.size() && i < columns.length; i++) {
+                        if (columns[i] >= 0 && !values.get(i).trim().isEmpty()) {
+                            fields.put(COLUMNS[columns[i]], values.get(i).trim());
+                        }
+                    }
+                }
+                return validate(line, fields);
+            } catch (IllegalArgumentException e) {
+                return new Row(line, e.getMessage());
+            }
+        }
+
+        
+        static Row validate(int line, Map<String, String> fields) {
+            String user = field(fields, "user");
+            if (user == null) return new Row(line, "Missing user");
+            int age = 0;
+            String ageText = field(fields, "age");
+            if (ageText != null) {
+                try {
+                    age = Integer.parseInt(ageText);
+                } catch (NumberFormatException e) {
+                    return new Row(line, "Invalid age: " + ageText);
+                }
+                if (age < 0) return new Row(line, "Invalid age: " + ageText);
+            }
+            String name = field(fields, "name");
+            if (name == null) return new Row(line, user, age, null);
+
+            String timing = field(fields, "timing");
+            if (timing != null && !isTiming(timing)) {
+                return new Row(line, "Invalid timing (HH:mm): " + timing);
+            }
+            String date = field(fields, "date");
+            if (date != null && !isDate(date)) {
+                return new Row(line, "Invalid date (dd/MM/yyyy): " + date);
+            }
+            Recurrence recurrence = null;
+            String repeat = field(fields, "repeat");
+            if (repeat != null) {
+                recurrence = Recurrence.parse(repeat);
+                if (recurrence == null) return new Row(line, "Invalid repeat: " + repeat);
+            }
+            Medicine medicine = new Medicine(name, field(fields, "dosage"), field(fields, "strength"), timing, date);
+            medicine.setRecurrence(recurrence);
+            return new Row(line, user, age, medicine);
+        }
+
+        
+        static boolean isTiming(String timing) {
+            int colon = timing.indexOf(':');
+            if (colon < 1 || colon > 2 || timing.length() != colon + 3) return false;
+            int hour = digits(timing, 0, colon);
+            int minute = digits(timing, colon + 1, timing.length());
+            return hour >= 0 && hour < 24 && minute >= 0 && minute < 60;
+        }
+
+        static boolean isDate(String date) {
+            int first = date.indexOf('/');
+            int second = date.indexOf('/', first + 1);
+            if (first < 1 || first > 2 || second - first < 2 || second - first > 3 || date.length() != second + 5) {
+                return false;
+            }
+            int day = digits(date, 0, first);
+            int month = digits(date, first + 1, second);
+            int year = digits(date, second + 1, date.length());
+            if (day < 1 || month < 1 || month > 12 || year < 0) return false;
+            return day <= YearMonth.of(year, month).lengthOfMonth();
+        }
+
+        private static int digits(String text, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') return -1;
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        private static String field(Map<String, String> fields, String name) {
+            String value = fields.get(name);
+            if (value == null) return null;
+            value = value.trim();
+            if (value.isEmpty()) return null;
+            if (value.indexOf(';') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Invalid character in " + name);
+            }
+            return value;
+        }
+
+        private static int[] columns(List<String> header) {
+            int[] columns = new int[header.size()];
+            boolean hasUser = false;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = Arrays.asList(COLUMNS).indexOf(header.get(i).trim().toLowerCase(Locale.ROOT));
+                if (columns[i] == 0) hasUser = true;
+            }
+            if (!hasUser) throw new IllegalArgumentException("CSV header must contain a user column");
+            return columns;
+        }
+
+        static List<String> parseCsv(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        sb.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(sb.toString());
+                    sb.setLength(0);
+                } else {
+                    sb.append(c);
+                }
+            }
+            if (quoted) throw new IllegalArgumentException("Unterminated quote");
+            values.add(sb.toString());
+            return values;
+        }
+
+        static String csv(String value) {
+            if (value == null || value.equals("null")) return "";
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        
+        public int export(File file) throws IOException {
+            boolean csv = file.getName().toLowerCase(Locale.ROOT).endsWith(".csv");
+            int rows = 0;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                if (csv) out.write(String.join(",", COLUMNS) + "\n");
+                for (User user : core.users().snapshot()) {
+                    synchronized (user) {
+                        if (!csv) {
+                            out.write(user.toFileString());
+                            rows++;
+                            continue;
+                        }
+                        String prefix = csv(user.getName()) + "," + user.getAge() + ",";
+                        List<Medicine> medicines = user.getMedicines();
+                        if (medicines.isEmpty()) {
+                            out.write(prefix + ",,,,,\n");
+                            rows++;
+                        }
+                        for (Medicine medicine : medicines) {
+                            out.write(prefix + csv(medicine.getName()) + "," + csv(medicine.getDosage()) + ","
+                                    + csv(medicine.getStrength()) + "," + csv(medicine.getTiming()) + ","
+                                    + csv(medicine.getDate()) + ","
+                                    + (medicine.isRecurring() ? csv(medicine.getRecurrence().toString()) : "") + "\n");
+                            rows++;
+                        }
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    
+    static class ReportEngine {
+        private static final int USERS_PER_CHUNK = 64;
+
+        enum Kind {
+            MEDICINES("Medicines", "medicines"), HEALTH_RECORDS("Health Records", "health_records");
+
+            final String title;
+            final String fileSuffix;
+
+            Kind(String title, String fileSuffix) {
+                this.title = title;
+                this.fileSuffix = fileSuffix;
+            }
+
+            @Override
+            public String toString() {
+                return title;
+            }
+        }
+
+        enum Format {
+            TEXT("Text", "txt"), CSV("CSV", "csv"), HTML("HTML summary", "html");
+
+            final String title;
+            final String extension;
+
+            Format(String title, String extension) {
+                this.title = title;
+                this.extension = extension;
+            }
+
+            @Override
+            public String toString() {
+                return title;
+            }
+        }
+
+        interface Progress {
+            void update(int done, int total);
+        }
+
+        private final AdherenceLog adherenceLog;
+        private final Clock clock;
+        private final int parallelism;
+
+        public ReportEngine(AdherenceLog adherenceLog, Clock clock) {
+            this(adherenceLog, clock, Integer.getInteger("smr.report.parallelism", Runtime.getRuntime().availableProcessors()));
+        }
+
+        public ReportEngine(AdherenceLog adherenceLog, Clock clock, int parallelism) {
+            this.adherenceLog = adherenceLog;
+            this.clock = clock;
+            this.parallelism = Math.max(1, parallelism);
+        }
+
+        
+        public int write(File file, List<User> users, Kind kind, Format format, Progress progress,
+                         BooleanSupplier cancelled) throws IOException {
+            List<User> snapshot = new ArrayList<>(users);
+            File tempFile = new File(file.getPath() + ".tmp");
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            int written = 0;
+            boolean completed = false;
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(channel, header(kind, format, snapshot.size()));
+                while (written < snapshot.size()) {
+                    while (submitted < snapshot.size() && inFlight.size() < parallelism * 2) {
+                        List<User> chunk = snapshot.subList(submitted, Math.min(snapshot.size(), submitted + USERS_PER_CHUNK));
+                        inFlight.add(pool.submit(() -> render(chunk, kind, format)));
+                        submitted += chunk.size();
+                    }
+                    if (cancelled.getAsBoolean()) throw new CancellationException("Report cancelled");
+                    write(channel, inFlight.poll().get());
+                    written = Math.min(snapshot.size(), written + USERS_PER_CHUNK);
+                    progress.update(written, snapshot.size());
+                }
+                write(channel, footer(format));
+                completed = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing " + file);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+                if (!completed) Files.deleteIfExists(tempFile.toPath());
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        }
+
+        private static void write(FileChannel channel, byte[] bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private byte[] header(Kind kind, Format format, int users) {
+            String generated = Instant.ofEpochMilli(clock.millis()).atZone(clock.getZone())
+                    .format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"));
+            String header;
+            switch (format) {
+                case CSV:
+                    header = kind == Kind.MEDICINES
+                            ? "user,age,name,dosage,strength,timing,date,repeat,status\n"
+                            : "user,age,date,bloodPressure,sugarLevel,oxygenLevel\n";
+                    break;
+                case HTML:
+                    header = "<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>" + kind.title + " Report</title>\n"
+                            + "<style>body{font-family:Arial,sans-serif}table{border-collapse:collapse}"
+                            + "td,th{border:1px solid #999;padding:2px 6px}</style></head><body>\n"
+                            + "<h1>" + kind.title + " Report</h1>\n<p>Generated " + generated + " for " + users + " users</p>\n";
+                    break;
+                default:
+                    header = kind.title + " Report, generated " + generated + " for " + users + " users\n\n";
+            }
+            return header.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static byte[] footer(Format format) {
+            return format == Format.HTML ? "</body></html>\n".getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+
+        private byte[] render(List<User> users, Kind kind, Format format) {
+            StringBuilder sb = new StringBuilder(users.size() * 512);
+            long now = clock.millis();
+            int today = (int) Instant.ofEpochMilli(now).atZone(clock.getZone()).toLocalDate().toEpochDay();
+            for (User user : users) {
+                User view = user.loadedView();
+                if (kind == Kind.MEDICINES) {
+                    renderMedicines(sb, user, view.getMedicines(), format, now);
+                } else {
+                    renderHealthRecords(sb, view, format, today);
+                }
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void renderMedicines(StringBuilder sb, User user, List<Medicine> medicines, Format format, long now) {
+            if (format == Format.CSV) {
+                String prefix = BulkTransfer.csv(user.getName()) + "," + user.getAge() + ",";
+                for (Medicine medicine : medicines) {
+                    sb.append(prefix).append(BulkTransfer.csv(medicine.getName())).append(',')
+                            .append(BulkTransfer.csv(medicine.getDosage())).append(',')
+                            .append(BulkTransfer.csv(medicine.getStrength())).append(',')
+                            .append(BulkTransfer.csv(medicine.getTiming())).append(',')
+                            .append(BulkTransfer.csv(medicine.getDate())).append(',')
+                            .append(medicine.isRecurring() ? BulkTransfer.csv(medicine.getRecurrence().toString()) : "")
+                            .append(',').append(BulkTransfer.csv(medicine.getStatus())).append('\n');
+                }
+                return;
+            }
+            String adherence = "Adherence: 7 days " + adherenceLog.rollingRate(user, 7, now)
+                    + ", 30 days " + adherenceLog.rollingRate(user, 30, now)
+                    + ", 90 days " + adherenceLog.rollingRate(user, 90, now);
+            if (format == Format.HTML) {
+                sb.append("<h2>").append(html(user.getName())).append(" (age ").append(user.getAge()).append(")</h2>\n<p>")
+                        .append(html(adherence)).append("</p>\n");
+                if (medicines.isEmpty()) {
+                    sb.append("<p>No medicines</p>\n");
+                    return;
+                }
+                sb.append("<table><tr><th>Name</th><th>Dosage</th><th>Strength</th><th>Timing</th><th>Date</th>"
+                        + "<th>Repeat</th><th>Status</th></tr>\n");
+                for (Medicine medicine : medicines) {
+                    sb.append("<tr><td>").append(html(medicine.getName()))
+                            .append("</td><td>").append(html(medicine.getDosage()))
+                            .append("</td><td>").append(html(medicine.getStrength()))
+                            .append("</td><td>").append(html(medicine.getTiming()))
+                            .append("</td><td>").append(html(medicine.getDate()))
+                            .append("</td><td>").append(medicine.isRecurring() ? html(medicine.getRecurrence().toString()) : "")
+                            .append("</td><td>").append(html(medicine.getStatus())).append("</td></tr>\n");
+                }
+                sb.append("</table>\n");
+                return;
+            }
+            sb.append("User: ").append(user.getName()).append(" (age ").append(user.getAge()).append(")\n");
+            for (Medicine medicine : medicines) {
+                sb.append(medicine.renderDetails()).append('\n');
+            }
+            sb.append(adherence).append("\n\n");
+        }
+
+        private static void renderHealthRecords(StringBuilder sb, User user, Format format, int today) {
+            List<HealthRecord> records = user.getHealthRecords();
+            if (format == Format.CSV) {
+                String prefix = BulkTransfer.csv(user.getName()) + "," + user.getAge() + ",";
+                for (HealthRecord record : records) {
+                    sb.append(prefix).append(BulkTransfer.csv(record.getDate())).append(',')
+                            .append(BulkTransfer.csv(record.getBloodPressure())).append(',')
+                            .append(BulkTransfer.csv(record.getSugarLevel())).append(',')
+                            .append(BulkTransfer.csv(record.getOxygenLevel())).append('\n');
+                }
+                return;
+            }
+            VitalsStore.Summary summary = user.getVitals().summarize(today - 29, today);
+            if (format == Format.HTML) {
+                sb.append("<h2>").append(html(user.getName())).append(" (age ").append(user.getAge()).append(")</h2>\n")
+                        .append("<p>Last 30 days: systolic ").append(html(summary.systolic.toString()))
+                        .append("; diastolic ").append(html(summary.diastolic.toString()))
+                        .append("; sugar level ").append(html(summary.sugar.toString()))
+                        .append("; oxygen level ").append(html(summary.oxygen.toString())).append("</p>\n");
+                if (records.isEmpty()) {
+                    sb.append("<p>No health records</p>\n");
+                    return;
+                }
+                sb.append("<table><tr><th>Date</th><th>Blood Pressure</th><th>Sugar Level</th><th>Oxygen Level</th></tr>\n");
+                for (HealthRecord record : records) {
+                    sb.append("<tr><td>").append(html(record.getDate()))
+                            .append("</td><td>").append(html(record.getBloodPressure()))
+                            .append("</td><td>").append(html(record.getSugarLevel()))
+                            .append("</td><td>").append(html(record.getOxygenLevel())).append("</td></tr>\n");
+                }
+                sb.append("</table>\n");
+                return;
+            }
+            sb.append("User: ").append(user.getName()).append(" (age ").append(user.getAge()).append(")\n");
+            for (HealthRecord record : records) {
+                sb.append(record.getDetails()).append('\n');
+            }
+            sb.append("Last 30 days: Systolic: ").append(summary.systolic)
+                    .append(", Diastolic: ").append(summary.diastolic)
+                    .append(", Sugar Level: ").append(summary.sugar)
+                    .append(", Oxygen Level: ").append(summary.oxygen).append("\n\n");
+        }
+
+        static String html(String value) {
+            if (value == null || value.equals("null")) return "";
+            StringBuilder sb = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '<': sb.append("&lt;"); break;
+                    case '>': sb.append("&gt;"); break;
+                    case '&': sb.append("&amp;"); break;
+                    case '"': sb.append("&quot;"); break;
+                    default: sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    
+    static class ApiServer {
+        private static final int DEFAULT_LIMIT = 100;
+
+        private static class NotFoundException extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            NotFoundException(String message) {
+                super(message);
+            }
+        }
+
+        private final ReminderCore core;
+        private final HttpServer server;
+        private final ExecutorService executor;
+
+        public ApiServer(ReminderCore core, String host, int port) throws IOException {
+            this.core = core;
+            this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            this.executor = requestExecutor();
+            server.setExecutor(executor);
+            server.createContext("/", this::handle);
+        }
+
+        
+        static ExecutorService requestExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                int threads = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+                return Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "http-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+
+        public static ApiServer startIfConfigured(ReminderCore core) throws IOException {
+            Integer port = Integer.getInteger("smr.http.port");
+            if (port == null) return null;
+            ApiServer server = new ApiServer(core, System.getProperty("smr.http.host", "127.0.0.1"), port);
+            server.start();
+            return server;
+        }
+
+        public void start() {
+            server.start();
+        }
+
+        public int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        public void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            int status = 200;
+            String body;
+            try {
+                body = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath().split("/"),
+                        parameters(exchange));
+                if (body == null) {
+                    status = 405;
+                    body = error("Method not allowed");
+                }
+            } catch (NotFoundException e) {
+                status = 404;
+                body = error(e.getMessage());
+            } catch (ReminderCore.DuplicateUserException e) {
+                status = 409;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e);
+                status = 500;
+                body = error("Internal error");
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        
+        private String route(String method, String[] path, Map<String, String> params) {
+            if (path.length == 2 && path[1].equals("users")) {
+                if (method.equals("GET")) return users();
+                if (method.equals("POST")) return user(core.addUser(required(params, "name"), integer(params, "age", 0)));
+                return null;
+            }
+            if (path.length == 3 && path[1].equals("reminders") && path[2].equals("upcoming")) {
+                if (!method.equals("GET")) return null;
+                return upcoming(integer(params, "hours", 24), integer(params, "limit", DEFAULT_LIMIT));
+            }
+            if (path.length == 3 && path[1].equals("reminders") && path[2].equals("latency")) {
+                if (!method.equals("GET")) return null;
+                return latency(integer(params, "limit", DEFAULT_LIMIT));
+            }
+            if (path.length < 3 || !path[1].equals("users")) throw new NotFoundException("Unknown path");
+
+            User user = core.users().byId(integer(path[2]));
+            if (user == null) throw new NotFoundException("No user " + path[2]);
+            if (path.length == 3) {
+                return method.equals("GET") ? user(user) : null;
+            }
+            if (path[3].equals("medicines")) {
+                if (path.length == 4) {
+                    if (method.equals("GET")) return medicines(user);
+                    if (method.equals("POST")) return addMedicine(user, params);
+                    return null;
+                }
+                Medicine medicine = medicine(user, integer(path[4]));
+                if (path.length == 5 && method.equals("DELETE")) {
+                    core.removeMedicine(user, medicine);
+                    return "{\"removed\":true}";
+                }
+                if (path.length == 6 && path[5].equals("taken") && method.equals("POST")) {
+                    long occurrence = medicine.nearestOccurrence(core.clock().millis());
+                    if (!medicine.hasOutcomeAt(occurrence) || !medicine.isTakenAt(occurrence)) {
+                        core.recordOutcome(user, medicine, occurrence, true);
+                    }
+                    return medicine(medicine, integer(path[4]));
+                }
+                return null;
+            }
+            if (path[3].equals("health-records") && path.length == 4) {
+                if (method.equals("GET")) return healthRecords(user);
+                if (method.equals("POST")) {
+                    HealthRecord record = new HealthRecord(params.get("date"), params.get("bloodPressure"),
+                            params.get("sugarLevel"), params.get("oxygenLevel"));
+                    core.addHealthRecord(user, record);
+                    return healthRecord(record);
+                }
+                return null;
+            }
+            throw new NotFoundException("Unknown path");
+        }
+
+        private String users() {
+            StringBuilder sb = new StringBuilder("[");
+            for (User user : core.users().snapshot()) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append(user(user));
+            }
+            return sb.append(']').toString();
+        }
+
+        private static String user(User user) {
+            return "{\"id\":" + user.getId() + ",\"name\":" + quote(user.getName()) + ",\"age\":" + user.getAge() + "}";
+        }
+
+        private String medicines(User user) {
+            List<Medicine> medicines = new ArrayList<>(user.getMedicines());
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < medicines.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(medicine(medicines.get(i), i));
+            }
+            return sb.append(']').toString();
+        }
+
+        private static Medicine medicine(User user, int index) {
+            List<Medicine> medicines = new ArrayList<>(user.getMedicines());
+            if (index < 0 || index >= medicines.size()) throw new NotFoundException("No medicine " + index);
+            return medicines.get(index);
+        }
+
+        private String medicine(Medicine medicine, int index) {
+            long nextDue = medicine.nextPendingOccurrence(core.clock().millis());
+            return "{\"index\":" + index
+                    + ",\"name\":" + quote(medicine.getName())
+                    + ",\"dosage\":" + quote(medicine.getDosage())
+                    + ",\"strength\":" + quote(medicine.getStrength())
+                    + ",\"timing\":" + quote(medicine.getTiming())
+                    + ",\"date\":" + quote(medicine.getDate())
+                    + ",\"status\":" + quote(medicine.getStatus())
+                    + ",\"taken\":" + medicine.isTaken()
+                    + ",\"repeat\":" + quote(medicine.isRecurring() ? medicine.getRecurrence().toString() : null)
+                    + ",\"nextDue\":" + (nextDue < 0 ? "null" : String.valueOf(nextDue)) + "}";
+        }
+
+        private String addMedicine(User user, Map<String, String> params) {
+            Recurrence recurrence = null;
+            String repeat = params.get("repeat");
+            if (repeat != null) {
+                recurrence = Recurrence.parse(repeat);
+                if (recurrence == null) throw new IllegalArgumentException("Invalid repeat: " + repeat);
+            }
+            Medicine medicine = new Medicine(params.get("name"), params.get("dosage"), params.get("strength"),
+                    params.get("timing"), params.get("date"));
+            medicine.setRecurrence(recurrence);
+            core.addMedicine(user, medicine);
+            return medicine(medicine, user.getMedicines().indexOf(medicine));
+        }
+
+        private static String healthRecords(User user) {
+            List<HealthRecord> records = new ArrayList<>(user.getHealthRecords());
+            StringBuilder sb = new StringBuilder("[");
+            for (HealthRecord record : records) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append(healthRecord(record));
+            }
+            return sb.append(']').toString();
+        }
+
+        private static String healthRecord(HealthRecord record) {
+            return "{\"date\":" + quote(record.getDate())
+                    + ",\"bloodPressure\":" + quote(record.getBloodPressure())
+                    + ",\"sugarLevel\":" + quote(record.getSugarLevel())
+                    + ",\"oxygenLevel\":" + quote(record.getOxygenLevel()) + "}";
+        }
+
+        private String upcoming(int hours, int limit) {
+            long until = core.clock().millis() + hours * 3_600_000L;
+            StringBuilder sb = new StringBuilder("[");
+            for (ReminderScheduler.Entry entry : core.upcoming(until, limit)) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append("{\"user\":").append(user(entry.user))
+                        .append(",\"medicine\":").append(quote(entry.medicine.getName()))
+                        .append(",\"dueAt\":").append(entry.dueAt).append('}');
+            }
+            return sb.append(']').toString();
+        }
+
+        
+        private String latency(int limit) {
+            ReminderLatency latency = core.reminderLatency();
+            List<Map.Entry<User, ReminderLatency.Window>> windows = new ArrayList<>(latency.windows().entrySet());
+            List<int[]> percentiles = new ArrayList<>();
+            for (Map.Entry<User, ReminderLatency.Window> entry : windows) {
+                percentiles.add(new int[] { entry.getValue().percentile(50), entry.getValue().percentile(99) });
+            }
+            Integer[] order = new Integer[windows.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(percentiles.get(b)[1], percentiles.get(a)[1]));
+            StringBuilder sb = new StringBuilder("{\"sloMillis\":").append(latency.getSloMillis()).append(",\"users\":[");
+            for (int i = 0; i < Math.min(limit, order.length); i++) {
+                Map.Entry<User, ReminderLatency.Window> entry = windows.get(order[i]);
+                ReminderLatency.Window window = entry.getValue();
+                if (i > 0) sb.append(',');
+                sb.append("{\"user\":").append(user(entry.getKey()))
+                        .append(",\"count\":").append(window.getCount())
+                        .append(",\"p50Millis\":").append(percentiles.get(order[i])[0])
+                        .append(",\"p99Millis\":").append(percentiles.get(order[i])[1])
+                        .append(",\"maxMillis\":").append(window.getMax())
+                        .append(",\"sloViolations\":").append(window.getViolations()).append('}');
+            }
+            return sb.append("]}").toString();
+        }
+
+        private static String error(String message) {
+            return "{\"error\":" + quote(message) + "}";
+        }
+
+        static String quote(String value) {
+            if (value == null) return "null";
+            StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            return sb.append('"').toString();
+        }
+
+        
+        private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+            Map<String, String> params = new HashMap<>();
+            decodeForm(exchange.getRequestURI().getRawQuery(), params);
+            byte[] bytes = exchange.getRequestBody().readAllBytes();
+            String body = new String(bytes, StandardCharsets.UTF_8).trim();
+            if (body.startsWith("{")) {
+                parseObject(body, params);
+            } else {
+                decodeForm(body, params);
+            }
+            return params;
+        }
+
+        private static void decodeForm(String form, Map<String, String> params) throws UnsupportedEncodingException {
+            if (form == null || form.isEmpty()) return;
+            for (String pair : form.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals <= 0) continue;
+                String value = URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+                params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), value.isEmpty() ? null : value);
+            }
+        }
+
+        
+        static void parseObject(String json, Map<String, String> params) {
+            int[] position = {1};
+            while (true) {
+                skipWhitespace(json, position);
+                if (position[0] >= json.length()) throw new IllegalArgumentException("Unterminated JSON object");
+                if (json.charAt(position[0]) == '}') return;
+                if (json.charAt(position[0]) == ',') {
+                    position[0]++;
+                    continue;
+                }
+                String key = parseString(json, position);
+                skipWhitespace(json, position);
+                if (position[0] >= json.length() || json.charAt(position[0]++) != ':') {
+                    throw new IllegalArgumentException("Expected ':' after " + key);
+                }
+                skipWhitespace(json, position);
+                String value;
+                if (position[0] < json.length() && json.charAt(position[0]) == '"') {
+                    value = parseString(json, position);
+                } else {
+                    int start = position[0];
+                    while (position[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(position[0])) < 0) {
+                        position[0]++;
+                    }
+                    value = json.substring(start, position[0]);
+                    if (value.equals("null")) value = null;
+                }
+                params.put(key, value == null || value.isEmpty() ? null : value);
+            }
+        }
+
+        private static String parseString(String json, int[] position) {
+            if (position[0] >= json.length() || json.charAt(position[0]) != '"') {
+                throw new IllegalArgumentException("Expected string at " + position[0]);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = position[0] + 1; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c == '"') {
+                    position[0] = i + 1;
+                    return sb.toString();
+                }
+                if (c == '\\' && i + 1 < json.length()) {
+                    char escaped = json.charAt(++i);
+                    switch (escaped) {
+                        case 'n': sb.append('\n'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'u':
+                            if (i + 4 >= json.length()) throw new IllegalArgumentException("Bad escape");
+                            sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                            i += 4;
+                            break;
+                        default: sb.append(escaped);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+
+        private static void skipWhitespace(String json, int[] position) {
+            while (position[0] < json.length() && Character.isWhitespace(json.charAt(position[0]))) {
+                position[0]++;
+            }
+        }
+
+        private static String required(Map<String, String> params, String name) {
+            String value = params.get(name);
+            if (value == null || value.trim().isEmpty()) throw new IllegalArgumentException("Missing " + name);
+            return value.trim();
+        }
+
+        private static int integer(Map<String, String> params, String name, int defaultValue) {
+            String value = params.get(name);
+            return value == null ? defaultValue : integer(value);
+        }
+
+        private static int integer(String value) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+    }
+
+    
+    static class HeadlessDaemon {
+        private final ReminderCore core;
+        private final PrintStream out;
+
+        public HeadlessDaemon(String dataFile, PrintStream out) {
+            this.out = out;
+            this.core = new ReminderCore(dataFile,
+                    e -> log("ERROR", "Error saving user data: " + e.getMessage()), this::drainEvents);
+        }
+
+        public void run() throws IOException, InterruptedException {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                core.close();
+                out.flush();
+            }, "core-shutdown"));
+            core.load();
+            log("INFO", "Loaded " + core.users().size() + " users");
+            core.start();
+            ApiServer server = ApiServer.startIfConfigured(core);
+            if (server != null) log("INFO", "HTTP API listening on port " + server.getPort());
+            Thread.currentThread().join();
+        }
+
+        private void drainEvents() {
+            ReminderEvent event;
+            while ((event = core.events().poll()) != null) {
+                if (event.medicine.isTakenAt(event.dueAt)) continue;
+                if (event.stage == ReminderScheduler.Stage.MISSED) {
+                    core.recordOutcome(event.user, event.medicine, event.dueAt, false);
+                }
+                log(event.stage.name(), event.user.getName() + ";" + event.medicine.getDetails()
+                        + ";due " + Instant.ofEpochMilli(event.dueAt));
+                long lateness = core.reminderDelivered(event);
+                if (lateness > core.reminderLatency().getSloMillis()) {
+                    log("WARN", "Reminder for " + event.user.getName() + " delivered " + lateness + "ms late");
+                }
+            }
+        }
+
+        private synchronized void log(String level, String message) {
+            out.println(Instant.now() + " " + level + " " + message);
+            out.flush();
+        }
+    }
+
+    
+    static class NotificationPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+        private static final int MAX_NOTIFICATIONS = 100;
+
+        private final DefaultListModel<ReminderEvent> model = new DefaultListModel<>();
+        private final JList<ReminderEvent> list = new JList<>(model);
+
+        NotificationPanel(Consumer<ReminderEvent> markTaken) {
+            super(new BorderLayout());
+            setBorder(BorderFactory.createTitledBorder("Reminders"));
+            list.setVisibleRowCount(4);
+            add(new JScrollPane(list), BorderLayout.CENTER);
+
+            JButton markTakenButton = new JButton("Mark as Taken");
+            JButton dismissButton = new JButton("Dismiss");
+            JButton clearButton = new JButton("Clear All");
+            markTakenButton.addActionListener(e -> {
+                ReminderEvent event = list.getSelectedValue();
+                if (event != null) {
+                    markTaken.accept(event);
+                    remove(event);
+                }
+            });
+            dismissButton.addActionListener(e -> {
+                ReminderEvent event = list.getSelectedValue();
+                if (event != null) remove(event);
+            });
+            clearButton.addActionListener(e -> {
+                model.clear();
+                setVisible(false);
+            });
+
+            JPanel buttons = new JPanel();
+            buttons.add(markTakenButton);
+            buttons.add(dismissButton);
+            buttons.add(clearButton);
+            add(buttons, BorderLayout.EAST);
+            setVisible(false);
+        }
+
+        void show(ReminderEvent event) {
+            model.add(0, event);
+            if (model.size() > MAX_NOTIFICATIONS) {
+                model.removeElementAt(model.size() - 1);
+            }
+            setVisible(true);
+            revalidate();
         }
 
-        public String getStrength() {
-            return strength;
+        private void remove(ReminderEvent event) {
+            model.removeElement(event);
+            setVisible(!model.isEmpty());
+            revalidate();
         }
+    }
 
-        public String getTiming() {
-            return timing;
-        }
+    
+    static class MedicineTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private static final String[] COLUMNS = {"Name", "Dosage", "Strength", "Timing", "Date", "Status"};
 
-        public boolean isTaken() {
-            return taken;
-        }
+        private final List<Medicine> medicines;
+        private final Clock clock;
 
-        public void setTaken(boolean taken) {
-            this.taken = taken;
-            this.status = taken ? "Taken" : "Pending";
+        MedicineTableModel(List<Medicine> medicines, Clock clock) {
+            this.medicines = medicines;
+            this.clock = clock;
         }
 
-        public String getStatus() {
-            return status;
+        Medicine getMedicine(int row) {
+            return medicines.get(row);
         }
 
-        public void setMissed() {
-            this.taken = false;
-            this.status = taken ? "Pending" : "Missed";
+        @Override
+        public int getRowCount() {
+            return medicines.size();
         }
 
-        public String getDate() {
-            return date;
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
         }
 
-        public String getDetails() {
-            return (name != null ? name : "No Name") + " - "
-                    + (dosage != null ? dosage : "No Dosage") + " - "
-                    + (strength != null ? strength : "No Strength") + " at "
-                    + (timing != null ? timing : "No Timing") + " on "
-                    + (date != null ? date : "No Date") + " (" + status + ")";
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
         }
 
-        
-        public String toFileString() {
-            return name + ";" + dosage + ";" + strength + ";" + timing + ";" + date + ";" + taken + ";" + status;
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 4 ? LocalDate.class : String.class;
         }
 
-        
-        public static Medicine fromFileString(String fileString) {
-            String[] parts = fileString.split(";", -1);
-            if (parts.length < 7) return null;
-            Medicine medicine = new Medicine(
-                    parts[0].isEmpty() ? null : parts[0],
-                    parts[1].isEmpty() ? null : parts[1],
-                    parts[2].isEmpty() ? null : parts[2],
-                    parts[3].isEmpty() ? null : parts[3],
-                    parts[4].isEmpty() ? null : parts[4]
-            );
-            medicine.taken = Boolean.parseBoolean(parts[5]);
-            medicine.status = parts[6];
-            return medicine;
+        @Override
+        public Object getValueAt(int row, int column) {
+            Medicine medicine = medicines.get(row);
+            switch (column) {
+                case 0: return medicine.getName();
+                case 1: return medicine.getDosage();
+                case 2: return medicine.getStrength();
+                case 3: return medicine.getTiming();
+                case 4: return toLocalDate(medicine.epochDay());
+                default:
+                    if (!medicine.isRecurring()) return medicine.getStatus();
+                    return "Repeats " + medicine.getRecurrence() + " ("
+                            + medicine.statusAt(medicine.nearestOccurrence(clock.millis())) + ")";
+            }
         }
     }
 
     
-    static class HealthRecord implements Serializable {
+    static class HealthRecordTableModel extends AbstractTableModel {
         private static final long serialVersionUID = 1L;
+        private static final String[] COLUMNS = {"Date", "Blood Pressure", "Sugar Level", "Oxygen Level"};
 
-        private String date;
-        private String bloodPressure;
-        private String sugarLevel;
-        private String oxygenLevel;
+        private final VitalsStore vitals;
 
-        public HealthRecord(String date, String bloodPressure, String sugarLevel, String oxygenLevel) {
-            this.date = date;
-            this.bloodPressure = bloodPressure;
-            this.sugarLevel = sugarLevel;
-            this.oxygenLevel = oxygenLevel;
+        HealthRecordTableModel(VitalsStore vitals) {
+            this.vitals = vitals;
         }
 
-        public String getDate() {
-            return date;
+        @Override
+        public int getRowCount() {
+            return vitals.size();
         }
 
-        public String getDetails() {
-            return "Date: " + (date != null ? date : "No Date") +
-                    ", Blood Pressure: " + (bloodPressure != null ? bloodPressure : "No Data") +
-                    ", Sugar Level: " + (sugarLevel != null ? sugarLevel : "No Data") +
-                    ", Oxygen Level: " + (oxygenLevel != null ? oxygenLevel : "No Data");
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
         }
 
-        
-        public String toFileString() {
-            return date + ";" + bloodPressure + ";" + sugarLevel + ";" + oxygenLevel;
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
         }
 
-        
-        public static HealthRecord fromFileString(String fileString) {
-            String[] parts = fileString.split(";", -1);
-            if (parts.length < 4) return null;
-            return new HealthRecord(
-                    parts[0].isEmpty() ? null : parts[0],
-                    parts[1].isEmpty() ? null : parts[1],
-                    parts[2].isEmpty() ? null : parts[2],
-                    parts[3].isEmpty() ? null : parts[3]
-            );
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? LocalDate.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) return toLocalDate(vitals.epochDay(row));
+            HealthRecord record = vitals.get(row);
+            switch (column) {
+                case 1: return record.bloodPressure;
+                case 2: return record.sugarLevel;
+                default: return record.oxygenLevel;
+            }
         }
     }
 
     
-    static class User implements Serializable {
+    static class MonthGridModel extends AbstractTableModel {
         private static final long serialVersionUID = 1L;
+        private static final String[] COLUMNS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
 
-        private String name;
-        private int age;
-        private List<Medicine> medicines;
-        private List<HealthRecord> healthRecords;
+        private final CalendarIndex calendar;
+        private YearMonth month;
+        private NavigableMap<LocalDate, List<Medicine>> visible;
 
-        public User(String name, int age) {
-            this.name = name;
-            this.age = age;
-            this.medicines = new ArrayList<>();
-            this.healthRecords = new ArrayList<>();
+        MonthGridModel(CalendarIndex calendar, YearMonth month) {
+            this.calendar = calendar;
+            setMonth(month);
         }
 
-        public String getName() {
-            return name;
+        YearMonth getMonth() {
+            return month;
         }
 
-        public void addMedicine(Medicine medicine) {
-            medicines.add(medicine);
+        void setMonth(YearMonth month) {
+            this.month = month;
+            this.visible = calendar.month(month);
+            fireTableDataChanged();
         }
 
-        public void removeMedicine(Medicine medicine) {
-            medicines.remove(medicine);
+        LocalDate dateAt(int row, int column) {
+            int day = row * 7 + column - (month.atDay(1).getDayOfWeek().getValue() - 1) + 1;
+            return day >= 1 && day <= month.lengthOfMonth() ? month.atDay(day) : null;
         }
 
-        public List<Medicine> getMedicines() {
-            return medicines;
+        List<Medicine> medicinesAt(int row, int column) {
+            LocalDate date = dateAt(row, column);
+            List<Medicine> medicines = date != null ? visible.get(date) : null;
+            return medicines != null ? medicines : Collections.emptyList();
         }
 
-        public void addHealthRecord(HealthRecord record) {
-            healthRecords.add(record);
+        @Override
+        public int getRowCount() {
+            return 6;
         }
 
-        public List<HealthRecord> getHealthRecords() {
-            return healthRecords;
+        @Override
+        public int getColumnCount() {
+            return 7;
         }
 
-        
-        public String toFileString() {
-            StringBuilder sb = new StringBuilder();
-            sb.append("User:").append(name).append(";").append(age).append("\n");
-            sb.append("Medicines:\n");
-            for (Medicine med : medicines) {
-                sb.append(med.toFileString()).append("\n");
-            }
-                sb.append("HealthRecords:\n");
-                for (HealthRecord record : healthRecords) {
-                    sb.append(record.toFileString()).append("\n");
-            }
-            sb.append("EndUser\n");
-            return sb.toString();
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
         }
 
-        
-        public static User fromFileString(BufferedReader reader) throws IOException {
-            String line;
-            String[] userInfo = null;
-
-            
-            line = reader.readLine();
-            if (line == null || line.isEmpty()) return null;
-
-            if (line.startsWith("User:")) {
-                userInfo = line.substring(5).split(";", -1);
-            } else {
-                return null;
-            }
-
-            if (userInfo.length < 2) return null;
-            User user = new User(userInfo[0], Integer.parseInt(userInfo[1]));
-
-            while ((line = reader.readLine()) != null) {
-                if (line.equals("Medicines:")) {
-                    while ((line = reader.readLine()) != null && !line.equals("HealthRecords:") && !line.equals("EndUser")) {
-                        Medicine med = Medicine.fromFileString(line);
-                        if (med != null) user.addMedicine(med);
-                    }
-                    if (line == null || line.equals("EndUser")) break;
-                }
-                if (line.equals("HealthRecords:")) {
-                    while ((line = reader.readLine()) != null && !line.equals("EndUser")) {
-                        HealthRecord record = HealthRecord.fromFileString(line);
-                        if (record != null) user.addHealthRecord(record);
-                    }
-                    if (line == null || line.equals("EndUser")) break;
-                }
-                if (line.equals("EndUser")) break;
-            }
-            return user;
+        @Override
+        public Object getValueAt(int row, int column) {
+            LocalDate date = dateAt(row, column);
+            if (date == null) return "";
+            int doses = medicinesAt(row, column).size();
+            return "<html><b>" + date.getDayOfMonth() + "</b>"
+                    + (doses > 0 ? "<br>" + doses + (doses == 1 ? " dose" : " doses") : "") + "</html>";
         }
     }
 
+    static LocalDate toLocalDate(int epochDay) {
+        return epochDay == VitalsStore.NO_DAY ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
     
     private JFrame frame;
-    private List<User> users;
+    private ReminderCore core;
+    private UserRegistry users;
     private User currentUser;
     private boolean isDarkTheme;
-    private Timer reminderTimer;
+    private NotificationPanel notificationPanel;
     private JLabel clockLabel;
     private JLabel userLabel; 
+    private JPopupMenu searchPopup;
+    private DefaultListModel<MedicineIndex.Hit> searchResults;
 
     
     private static final String DATA_FILE = "users_data.txt";
+    private static final int SEARCH_DEBOUNCE_MILLIS = 150;
+    private static final int MAX_IMPORT_ERRORS_SHOWN = 20;
+    private static final int SEARCH_SUGGESTION_LIMIT = 50;
+    private static final DateTimeFormatter DISPLAY_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
     public SmartMedicineReminderApp() {
-        users = new ArrayList<>();
+        core = new ReminderCore(DATA_FILE,
+                e -> SwingUtilities.invokeLater(() ->
+                        JOptionPane.showMessageDialog(frame, "Error saving user data: " + e.getMessage())),
+                () -> SwingUtilities.invokeLater(this::checkReminders));
+        Runtime.getRuntime().addShutdownHook(new Thread(core::close, "core-shutdown"));
+        users = core.users();
         loadUserData();
         isDarkTheme = false;
         initialize();
+        startApiServer();
     }
 
     private void initialize() {
@@ -286,11 +5528,18 @@ public class SmartMedicineReminderApp {
         JButton addUserButton = new JButton("Add User");
         JButton selectUserButton = new JButton("Select User");
 
+        JButton importButton = new JButton("Import...");
+        JButton exportButton = new JButton("Export...");
+
         addUserButton.addActionListener(e -> addUser());
         selectUserButton.addActionListener(e -> selectUser());
+        importButton.addActionListener(e -> importUsers());
+        exportButton.addActionListener(e -> exportUsers());
 
         userControlPanel.add(addUserButton);
         userControlPanel.add(selectUserButton);
+        userControlPanel.add(importButton);
+        userControlPanel.add(exportButton);
         userPanel.add(userControlPanel, BorderLayout.NORTH);
 
         
@@ -347,12 +5596,18 @@ public class SmartMedicineReminderApp {
         JPanel searchPanel = new JPanel(new BorderLayout());
         JTextField searchField = new JTextField();
         JButton searchButton = new JButton("Search Medicines");
+        JCheckBox fuzzyCheckBox = new JCheckBox("Fuzzy");
 
-        searchButton.addActionListener(e -> searchMedicines(searchField.getText()));
+        searchButton.addActionListener(e -> searchMedicines(searchField.getText(), fuzzyCheckBox.isSelected()));
+        installSearchAsYouType(searchField, fuzzyCheckBox);
+
+        JPanel searchButtonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        searchButtonsPanel.add(fuzzyCheckBox);
+        searchButtonsPanel.add(searchButton);
 
         searchPanel.add(new JLabel("Search Medicines: "), BorderLayout.WEST);
         searchPanel.add(searchField, BorderLayout.CENTER);
-        searchPanel.add(searchButton, BorderLayout.EAST);
+        searchPanel.add(searchButtonsPanel, BorderLayout.EAST);
 
         
         JPanel topRightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -366,6 +5621,9 @@ public class SmartMedicineReminderApp {
         frame.getContentPane().add(topPanel, BorderLayout.NORTH);
         frame.getContentPane().add(tabbedPane, BorderLayout.CENTER);
 
+        notificationPanel = new NotificationPanel(this::markTaken);
+        frame.getContentPane().add(notificationPanel, BorderLayout.SOUTH);
+
         
         startReminderTimer();
 
@@ -373,35 +5631,44 @@ public class SmartMedicineReminderApp {
     }
 
     private void updateClock() {
-        String currentTime = new SimpleDateFormat("HH:mm:ss").format(new Date());
+        String currentTime = new SimpleDateFormat("HH:mm:ss").format(new Date(core.clock().millis()));
         clockLabel.setText("  " + currentTime + "  ");
     }
 
     private void startReminderTimer() {
-        reminderTimer = new Timer(20000, e -> checkReminders());
-        reminderTimer.start();
+        core.start();
     }
 
-    private void checkReminders() {
-        if (currentUser == null) return;
+    private void startApiServer() {
+        try {
+            ApiServer.startIfConfigured(core);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Error starting HTTP API: " + e.getMessage());
+        }
+    }
 
-        String currentDate = new SimpleDateFormat("dd/MM/yyyy").format(new Date());
-        String currentTime = new SimpleDateFormat("HH:mm").format(new Date());
-        for (Medicine medicine : currentUser.getMedicines()) {
-            if (medicine.getDate() != null && medicine.getTiming() != null) {
-                if (medicine.getDate().equals(currentDate) && medicine.getTiming().equals(currentTime)) {
-                    if (!medicine.isTaken()) {
-                        JOptionPane.showMessageDialog(frame, "Time to take your medicine: " + medicine.getName());
-                    }
-                }
-                
-                if (medicine.getDate().equals(currentDate) && medicine.getTiming().compareTo(currentTime) < 0 && !medicine.isTaken()) {
-                    medicine.setMissed();
-                }
+    private void checkReminders() {
+        ReminderEvent event;
+        while ((event = core.events().poll()) != null) {
+            Medicine medicine = event.medicine;
+            if (medicine.isTakenAt(event.dueAt)) continue;
+            if (event.stage == ReminderScheduler.Stage.MISSED) {
+                recordOutcome(event.user, medicine, event.dueAt, false);
             }
+            notificationPanel.show(event);
+            core.reminderDelivered(event);
         }
     }
 
+    private void markTaken(ReminderEvent event) {
+        if (event.medicine.isTakenAt(event.dueAt)) return;
+        recordOutcome(event.user, event.medicine, event.dueAt, true);
+    }
+
+    private void recordOutcome(User user, Medicine medicine, long occurrenceAt, boolean taken) {
+        core.recordOutcome(user, medicine, occurrenceAt, taken);
+    }
+
     private void addUser() {
         JTextField nameField = new JTextField();
         JTextField ageField = new JTextField();
@@ -428,42 +5695,139 @@ public class SmartMedicineReminderApp {
                 JOptionPane.showMessageDialog(frame, "Invalid age!");
                 return;
             }
-            User user = new User(name, age);
-            users.add(user);
-            currentUser = user;
+            try {
+                currentUser = core.addUser(name, age);
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(frame, e.getMessage());
+                return;
+            }
             userLabel.setText("User: " + currentUser.getName());
             JOptionPane.showMessageDialog(frame, "User added and selected!");
-            saveUserData(); 
         }
     }
 
+    
+    private void importUsers() {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setDialogTitle("Import users and medicines (CSV or JSONL)");
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        new SwingWorker<BulkTransfer.Result, Void>() {
+            @Override
+            protected BulkTransfer.Result doInBackground() throws IOException {
+                return new BulkTransfer(core, error -> {
+                    if (errors.size() < MAX_IMPORT_ERRORS_SHOWN) errors.add(error);
+                }).importFile(file);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    BulkTransfer.Result result = get();
+                    StringBuilder message = new StringBuilder("Imported " + result);
+                    for (String error : errors) {
+                        message.append('\n').append(error);
+                    }
+                    if (result.rejected > errors.size()) message.append("\n...");
+                    JOptionPane.showMessageDialog(frame, message.toString());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(frame, "Error importing " + file.getName() + ": " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void exportUsers() {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setDialogTitle("Export users (.csv for medicines, otherwise users_data.txt format)");
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                return new BulkTransfer(core, error -> { }).export(file);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(frame, "Exported " + get() + " rows to " + file.getName());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(frame, "Error exporting " + file.getName() + ": " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     private void selectUser() {
         if (users.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "No users available! Please add a user first.");
             return;
         }
 
-        String[] userNames = users.stream().map(User::getName).toArray(String[]::new);
-        String selectedName = (String) JOptionPane.showInputDialog(
-                frame,
-                "Select a user:",
-                "User Selection",
-                JOptionPane.PLAIN_MESSAGE,
-                null,
-                userNames,
-                userNames[0]
-        );
-
-        if (selectedName != null) {
-            currentUser = users.stream()
-                    .filter(u -> u.getName().equals(selectedName))
-                    .findFirst()
-                    .orElse(null);
+        UserListModel listModel = new UserListModel(users);
+        JList<User> userList = createUserList(listModel);
+        userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        userList.setVisibleRowCount(12);
+        userList.setSelectedIndex(0);
+
+        JTextField filterField = new JTextField();
+        Timer filterTimer = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> {
+            listModel.setFilter(filterField.getText());
+            userList.setSelectedIndex(listModel.getSize() > 0 ? 0 : -1);
+        });
+        filterTimer.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(filterField, BorderLayout.NORTH);
+        panel.add(new JScrollPane(userList), BorderLayout.CENTER);
+
+        int result = JOptionPane.showConfirmDialog(frame, panel, "Select a user:",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        filterTimer.stop();
+
+        User selected = userList.getSelectedValue();
+        if (result == JOptionPane.OK_OPTION && selected != null) {
+            currentUser = selected;
+            currentUser.ensureLoaded();
             userLabel.setText("User: " + currentUser.getName());
             JOptionPane.showMessageDialog(frame, "User " + currentUser.getName() + " selected!");
         }
     }
 
+    private static JList<User> createUserList(UserListModel listModel) {
+        JList<User> userList = new JList<>(listModel);
+        userList.setPrototypeCellValue(new User("XXXXXXXXXXXXXXXXXXXXXXXX", 0));
+        userList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, ((User) value).getName(), index,
+                        isSelected, cellHasFocus);
+            }
+        });
+        return userList;
+    }
+
     private void addMedicine() {
         if (currentUser == null) {
             JOptionPane.showMessageDialog(frame, "No user selected! Please select a user first.");
@@ -474,10 +5838,12 @@ public class SmartMedicineReminderApp {
         JTextField dosageField = new JTextField();
         JTextField strengthField = new JTextField();
         JTextField timingField = new JTextField();
-        JTextField dateField = new JTextField(new SimpleDateFormat("dd/MM/yyyy").format(new Date()));
+        JTextField dateField = new JTextField(new SimpleDateFormat("dd/MM/yyyy").format(new Date(core.clock().millis())));
+        JTextField repeatField = new JTextField();
+        repeatField.setToolTipText("e.g. every 8h, daily at 08:00,20:00 until 31/12/2025");
         String[] options = {"Add Medicine", "Cancel"};
 
-        JPanel panel = new JPanel(new GridLayout(5, 2));
+        JPanel panel = new JPanel(new GridLayout(6, 2));
         panel.add(new JLabel("Medicine Name: "));
         panel.add(nameField);
         panel.add(new JLabel("Dosage: "));
@@ -488,6 +5854,8 @@ public class SmartMedicineReminderApp {
         panel.add(timingField);
         panel.add(new JLabel("Date (dd/MM/yyyy): "));
         panel.add(dateField);
+        panel.add(new JLabel("Repeat (optional, e.g. every 8h): "));
+        panel.add(repeatField);
 
         int result = JOptionPane.showOptionDialog(frame, panel, "Add Medicine",
                 JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE,
@@ -499,6 +5867,17 @@ public class SmartMedicineReminderApp {
             String strength = strengthField.getText().trim();
             String timing = timingField.getText().trim();
             String date = dateField.getText().trim();
+            String repeat = repeatField.getText().trim();
+
+            Recurrence recurrence = null;
+            if (!repeat.isEmpty()) {
+                recurrence = Recurrence.parse(repeat);
+                if (recurrence == null) {
+                    JOptionPane.showMessageDialog(frame, "Invalid repeat! Use e.g. \"every 8h\" or "
+                            + "\"daily at 08:00,20:00 until 31/12/2025\".");
+                    return;
+                }
+            }
 
             
             Medicine medicine = new Medicine(
@@ -508,9 +5887,9 @@ public class SmartMedicineReminderApp {
                     timing.isEmpty() ? null : timing,
                     date.isEmpty() ? null : date
             );
-            currentUser.addMedicine(medicine);
+            medicine.setRecurrence(recurrence);
+            core.addMedicine(currentUser, medicine);
             JOptionPane.showMessageDialog(frame, "Medicine added for " + currentUser.getName() + "!");
-            saveUserData(); 
         }
     }
 
@@ -526,32 +5905,93 @@ public class SmartMedicineReminderApp {
             return;
         }
 
-        JPanel panel = new JPanel(new BorderLayout());
-        DefaultListModel<String> listModel = new DefaultListModel<>();
-        for (Medicine med : medicines) {
-            listModel.addElement(med.getDetails());
-        }
-
-        JList<String> medicineList = new JList<>(listModel);
-        JScrollPane scrollPane = new JScrollPane(medicineList);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        MedicineTableModel tableModel = new MedicineTableModel(medicines, core.clock());
+        JTable medicineTable = new JTable(tableModel);
+        JPanel panel = createFilterableTablePanel(medicineTable);
 
         JButton markTakenButton = new JButton("Mark as Taken");
         markTakenButton.addActionListener(e -> {
-            int index = medicineList.getSelectedIndex();
-            if (index != -1) {
-                medicines.get(index).setTaken(true);
-                listModel.setElementAt(medicines.get(index).getDetails(), index);
-                saveUserData(); 
+            int viewIndex = medicineTable.getSelectedRow();
+            if (viewIndex != -1) {
+                int index = medicineTable.convertRowIndexToModel(viewIndex);
+                Medicine medicine = tableModel.getMedicine(index);
+                long occurrenceAt = medicine.nearestOccurrence(core.clock().millis());
+                recordOutcome(currentUser, medicine, occurrenceAt, true);
+                tableModel.fireTableRowsUpdated(index, index);
             }
         });
 
-        panel.add(markTakenButton, BorderLayout.SOUTH);
+        long now = core.clock().millis();
+        AdherenceLog adherenceLog = core.adherenceLog();
+        JLabel adherenceLabel = new JLabel("Adherence: 7 days " + adherenceLog.rollingRate(currentUser, 7, now)
+                + ", 30 days " + adherenceLog.rollingRate(currentUser, 30, now)
+                + ", 90 days " + adherenceLog.rollingRate(currentUser, 90, now));
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(adherenceLabel, BorderLayout.WEST);
+        bottomPanel.add(markTakenButton, BorderLayout.EAST);
+        panel.add(bottomPanel, BorderLayout.SOUTH);
 
         JOptionPane.showMessageDialog(frame, panel, "Medicines for " + currentUser.getName(),
                 JOptionPane.PLAIN_MESSAGE);
     }
 
+    private JPanel createFilterableTablePanel(JTable table) {
+        TableRowSorter<TableModel> sorter = new TableRowSorter<>(table.getModel());
+        sorter.setStringConverter(new TableStringConverter() {
+            @Override
+            public String toString(TableModel model, int row, int column) {
+                Object value = model.getValueAt(row, column);
+                if (value instanceof LocalDate) return ((LocalDate) value).format(DISPLAY_DATE_FORMAT);
+                return value == null ? "" : value.toString();
+            }
+        });
+        table.setRowSorter(sorter);
+        table.setFillsViewportHeight(true);
+        table.setDefaultRenderer(LocalDate.class, new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                super.setValue(value == null ? "No Date" : ((LocalDate) value).format(DISPLAY_DATE_FORMAT));
+            }
+        });
+
+        JTextField filterField = new JTextField();
+        Timer filterTimer = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> {
+            String filter = filterField.getText().trim();
+            sorter.setRowFilter(filter.isEmpty() ? null
+                    : RowFilter.regexFilter("(?i)" + Pattern.quote(filter)));
+        });
+        filterTimer.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
+
+        JPanel filterPanel = new JPanel(new BorderLayout());
+        filterPanel.add(new JLabel("Filter: "), BorderLayout.WEST);
+        filterPanel.add(filterField, BorderLayout.CENTER);
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(700, 400));
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(filterPanel, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        return panel;
+    }
+
     private void removeMedicine() {
         if (currentUser == null) {
             JOptionPane.showMessageDialog(frame, "No user selected! Please select a user first.");
@@ -564,31 +6004,21 @@ public class SmartMedicineReminderApp {
             return;
         }
 
-        String[] medicineNames = medicines.stream()
-                .map(Medicine::getDetails)
-                .toArray(String[]::new);
-
-        String selectedMedicine = (String) JOptionPane.showInputDialog(
-                frame,
-                "Select a medicine to remove:",
-                "Remove Medicine",
-                JOptionPane.PLAIN_MESSAGE,
-                null,
-                medicineNames,
-                medicineNames[0]
-        );
-
-        if (selectedMedicine != null) {
-            Medicine medicineToRemove = medicines.stream()
-                    .filter(med -> med.getDetails().equals(selectedMedicine))
-                    .findFirst()
-                    .orElse(null);
-
-            if (medicineToRemove != null) {
-                currentUser.removeMedicine(medicineToRemove);
-                JOptionPane.showMessageDialog(frame, "Medicine removed.");
-                saveUserData(); 
-            }
+        MedicineTableModel tableModel = new MedicineTableModel(medicines, core.clock());
+        JTable medicineTable = new JTable(tableModel);
+        medicineTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JPanel panel = createFilterableTablePanel(medicineTable);
+        panel.add(new JLabel("Select a medicine to remove:"), BorderLayout.SOUTH);
+        medicineTable.setRowSelectionInterval(0, 0);
+
+        int result = JOptionPane.showConfirmDialog(frame, panel, "Remove Medicine",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+
+        int viewIndex = medicineTable.getSelectedRow();
+        if (result == JOptionPane.OK_OPTION && viewIndex != -1) {
+            Medicine medicineToRemove = tableModel.getMedicine(medicineTable.convertRowIndexToModel(viewIndex));
+            core.removeMedicine(currentUser, medicineToRemove);
+            JOptionPane.showMessageDialog(frame, "Medicine removed.");
         }
     }
 
@@ -598,27 +6028,74 @@ public class SmartMedicineReminderApp {
             return;
         }
 
-        Map<String, List<Medicine>> dateMedicineMap = new HashMap<>();
-        for (Medicine medicine : currentUser.getMedicines()) {
-            String date = medicine.getDate() != null ? medicine.getDate() : "No Date";
-            dateMedicineMap.computeIfAbsent(date, k -> new ArrayList<>()).add(medicine);
-        }
+        CalendarIndex calendar = currentUser.getCalendar();
+        MonthGridModel gridModel = new MonthGridModel(calendar, calendar.defaultMonth(LocalDate.now(core.clock())));
+        JTable grid = new JTable(gridModel);
+        grid.setRowHeight(44);
+        grid.setCellSelectionEnabled(true);
+        grid.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        grid.getTableHeader().setReorderingAllowed(false);
+
+        DefaultListModel<String> dayModel = new DefaultListModel<>();
+        JList<String> dayList = new JList<>(dayModel);
+        dayList.setVisibleRowCount(6);
+
+        JLabel monthLabel = new JLabel("", SwingConstants.CENTER);
+        Runnable showUndated = () -> {
+            List<Medicine> undated = calendar.undated();
+            if (undated.isEmpty()) return;
+            dayModel.addElement("Date: No Date");
+            for (Medicine medicine : undated) {
+                dayModel.addElement("    " + medicine.getDetails());
+            }
+        };
+        Runnable showSelectedDay = () -> {
+            dayModel.clear();
+            int row = grid.getSelectedRow();
+            int column = grid.getSelectedColumn();
+            LocalDate date = row < 0 || column < 0 ? null : gridModel.dateAt(row, column);
+            if (date == null) {
+                showUndated.run();
+                return;
+            }
+            dayModel.addElement("Date: " + date.format(DISPLAY_DATE_FORMAT));
+            for (Medicine medicine : gridModel.medicinesAt(row, column)) {
+                dayModel.addElement("    " + medicine.getDetails());
+            }
+        };
+        Runnable showMonth = () -> {
+            monthLabel.setText(gridModel.getMonth().format(DateTimeFormatter.ofPattern("MMMM yyyy")));
+            grid.clearSelection();
+            dayModel.clear();
+            showUndated.run();
+        };
+        grid.getSelectionModel().addListSelectionListener(e -> showSelectedDay.run());
+        grid.getColumnModel().getSelectionModel().addListSelectionListener(e -> showSelectedDay.run());
+
+        JButton previousButton = new JButton("<");
+        JButton nextButton = new JButton(">");
+        previousButton.addActionListener(e -> {
+            gridModel.setMonth(gridModel.getMonth().minusMonths(1));
+            showMonth.run();
+        });
+        nextButton.addActionListener(e -> {
+            gridModel.setMonth(gridModel.getMonth().plusMonths(1));
+            showMonth.run();
+        });
+        showMonth.run();
 
-        String[] dates = dateMedicineMap.keySet().toArray(new String[0]);
-        Arrays.sort(dates);
+        JPanel navigationPanel = new JPanel(new BorderLayout());
+        navigationPanel.add(previousButton, BorderLayout.WEST);
+        navigationPanel.add(monthLabel, BorderLayout.CENTER);
+        navigationPanel.add(nextButton, BorderLayout.EAST);
 
-        JPanel panel = new JPanel(new BorderLayout());
-        DefaultListModel<String> listModel = new DefaultListModel<>();
-        for (String date : dates) {
-            listModel.addElement("Date: " + date);
-            for (Medicine med : dateMedicineMap.get(date)) {
-                listModel.addElement("    " + med.getDetails());
-            }
-        }
+        JScrollPane gridScrollPane = new JScrollPane(grid);
+        gridScrollPane.setPreferredSize(new Dimension(560, 44 * 6 + 24));
 
-        JList<String> calendarList = new JList<>(listModel);
-        JScrollPane scrollPane = new JScrollPane(calendarList);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(navigationPanel, BorderLayout.NORTH);
+        panel.add(gridScrollPane, BorderLayout.CENTER);
+        panel.add(new JScrollPane(dayList), BorderLayout.SOUTH);
 
         JOptionPane.showMessageDialog(frame, panel, "Medicine Calendar for " + currentUser.getName(),
                 JOptionPane.PLAIN_MESSAGE);
@@ -630,7 +6107,7 @@ public class SmartMedicineReminderApp {
             return;
         }
 
-        JTextField dateField = new JTextField(new SimpleDateFormat("dd/MM/yyyy").format(new Date()));
+        JTextField dateField = new JTextField(new SimpleDateFormat("dd/MM/yyyy").format(new Date(core.clock().millis())));
         JTextField bpField = new JTextField();
         JTextField sugarField = new JTextField();
         JTextField oxygenField = new JTextField();
@@ -663,9 +6140,8 @@ public class SmartMedicineReminderApp {
                     sugar.isEmpty() ? null : sugar,
                     oxygen.isEmpty() ? null : oxygen
             );
-            currentUser.addHealthRecord(record);
+            core.addHealthRecord(currentUser, record);
             JOptionPane.showMessageDialog(frame, "Health record added for " + currentUser.getName() + "!");
-            saveUserData(); 
         }
     }
 
@@ -675,71 +6151,190 @@ public class SmartMedicineReminderApp {
             return;
         }
 
-        List<HealthRecord> records = currentUser.getHealthRecords();
-        if (records.isEmpty()) {
+        VitalsStore vitals = currentUser.getVitals();
+        if (vitals.size() == 0) {
             JOptionPane.showMessageDialog(frame, "No health records found for " + currentUser.getName());
             return;
         }
 
-        JPanel panel = new JPanel(new BorderLayout());
-        DefaultListModel<String> listModel = new DefaultListModel<>();
-        for (HealthRecord record : records) {
-            listModel.addElement(record.getDetails());
-        }
+        JPanel panel = createFilterableTablePanel(new JTable(new HealthRecordTableModel(vitals)));
 
-        JList<String> recordList = new JList<>(listModel);
-        JScrollPane scrollPane = new JScrollPane(recordList);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        int today = (int) LocalDate.now(core.clock()).toEpochDay();
+        VitalsStore.Summary summary = vitals.summarize(today - 29, today);
+        JTextArea summaryArea = new JTextArea("Last 30 days:\n"
+                + "Systolic: " + summary.systolic + "\n"
+                + "Diastolic: " + summary.diastolic + "\n"
+                + "Sugar Level: " + summary.sugar + "\n"
+                + "Oxygen Level: " + summary.oxygen);
+        summaryArea.setEditable(false);
+        summaryArea.setOpaque(false);
+        panel.add(summaryArea, BorderLayout.SOUTH);
 
         JOptionPane.showMessageDialog(frame, panel, "Health Records for " + currentUser.getName(),
                 JOptionPane.PLAIN_MESSAGE);
     }
 
     private void printMedicines() {
-        if (currentUser == null) {
-            JOptionPane.showMessageDialog(frame, "No user selected! Please select a user first.");
+        printReport(ReportEngine.Kind.MEDICINES);
+    }
+
+    private void printHealthRecords() {
+        printReport(ReportEngine.Kind.HEALTH_RECORDS);
+    }
+
+    
+    private void printReport(ReportEngine.Kind kind) {
+        if (users.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "No users available! Please add a user first.");
             return;
         }
 
-        List<Medicine> medicines = currentUser.getMedicines();
-        if (medicines.isEmpty()) {
-            JOptionPane.showMessageDialog(frame, "No medicines to print for " + currentUser.getName());
+        JRadioButton currentButton = new JRadioButton(currentUser != null
+                ? "Current user (" + currentUser.getName() + ")" : "Current user", currentUser != null);
+        JRadioButton selectedButton = new JRadioButton("Selected users");
+        JRadioButton allButton = new JRadioButton("All users", currentUser == null);
+        currentButton.setEnabled(currentUser != null);
+        ButtonGroup scopeGroup = new ButtonGroup();
+        scopeGroup.add(currentButton);
+        scopeGroup.add(selectedButton);
+        scopeGroup.add(allButton);
+
+        JList<User> userList = createUserList(new UserListModel(users));
+        userList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        userList.setVisibleRowCount(8);
+        userList.addListSelectionListener(e -> selectedButton.setSelected(true));
+        JComboBox<ReportEngine.Format> formatBox = new JComboBox<>(ReportEngine.Format.values());
+
+        JPanel scopePanel = new JPanel(new GridLayout(3, 1));
+        scopePanel.add(currentButton);
+        scopePanel.add(selectedButton);
+        scopePanel.add(allButton);
+        JPanel formatPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        formatPanel.add(new JLabel("Format: "));
+        formatPanel.add(formatBox);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(scopePanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(userList), BorderLayout.CENTER);
+        panel.add(formatPanel, BorderLayout.SOUTH);
+
+        int result = JOptionPane.showConfirmDialog(frame, panel, "Print " + kind,
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) return;
+
+        List<User> selected;
+        String prefix;
+        if (currentButton.isSelected()) {
+            selected = Collections.singletonList(currentUser);
+            prefix = currentUser.getName();
+        } else if (selectedButton.isSelected()) {
+            selected = userList.getSelectedValuesList();
+            prefix = "selected_users";
+        } else {
+            selected = users.snapshot();
+            prefix = "all_users";
+        }
+        if (selected.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "No users selected!");
             return;
         }
+        ReportEngine.Format format = (ReportEngine.Format) formatBox.getSelectedItem();
+        File file = new File(prefix + "_" + kind.fileSuffix + "." + format.extension);
+
+        JProgressBar progressBar = new JProgressBar(0, selected.size());
+        progressBar.setStringPainted(true);
+        JButton cancelButton = new JButton("Cancel");
+        JDialog progressDialog = new JDialog(frame, "Printing " + kind, false);
+        JPanel progressPanel = new JPanel(new BorderLayout(5, 5));
+        progressPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        progressPanel.add(new JLabel("Writing " + file.getName()), BorderLayout.NORTH);
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        progressDialog.getContentPane().add(progressPanel);
+        progressDialog.pack();
+        progressDialog.setLocationRelativeTo(frame);
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        cancelButton.addActionListener(e -> cancelled.set(true));
+        new SwingWorker<Integer, Integer>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                return core.reports().write(file, selected, kind, format,
+                        (done, total) -> publish(done), cancelled::get);
+            }
 
-        try (PrintWriter writer = new PrintWriter(currentUser.getName() + "_medicines.txt")) {
-            for (Medicine med : medicines) {
-                writer.println(med.getDetails());
+            @Override
+            protected void process(List<Integer> chunks) {
+                progressBar.setValue(chunks.get(chunks.size() - 1));
             }
-            JOptionPane.showMessageDialog(frame, "Medicines printed to " + currentUser.getName() + "_medicines.txt");
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(frame, "Error printing medicines: " + e.getMessage());
-        }
+
+            @Override
+            protected void done() {
+                progressDialog.dispose();
+                try {
+                    JOptionPane.showMessageDialog(frame, kind + " for " + get() + " users printed to " + file.getName());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CancellationException) {
+                        JOptionPane.showMessageDialog(frame, "Printing cancelled.");
+                    } else {
+                        JOptionPane.showMessageDialog(frame, "Error printing " + kind.title.toLowerCase() + ": " + cause.getMessage());
+                    }
+                }
+            }
+        }.execute();
+        progressDialog.setVisible(true);
     }
 
-    private void printHealthRecords() {
-        if (currentUser == null) {
-            JOptionPane.showMessageDialog(frame, "No user selected! Please select a user first.");
-            return;
-        }
+    private void installSearchAsYouType(JTextField searchField, JCheckBox fuzzyCheckBox) {
+        searchResults = new DefaultListModel<>();
+        JList<MedicineIndex.Hit> resultList = new JList<>(searchResults);
+        resultList.setVisibleRowCount(8);
+        resultList.setFocusable(false);
+        searchPopup = new JPopupMenu();
+        searchPopup.setFocusable(false);
+        searchPopup.add(new JScrollPane(resultList));
+
+        Timer debounce = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> {
+            String query = searchField.getText();
+            searchResults.clear();
+            if (query.trim().isEmpty()) {
+                searchPopup.setVisible(false);
+                return;
+            }
+            for (MedicineIndex.Hit hit : core.search(query, currentUser, fuzzyCheckBox.isSelected(),
+                    SEARCH_SUGGESTION_LIMIT)) {
+                searchResults.addElement(hit);
+            }
+            if (searchResults.isEmpty()) {
+                searchPopup.setVisible(false);
+            } else {
+                searchPopup.setPopupSize(searchField.getWidth(), searchPopup.getPreferredSize().height);
+                searchPopup.show(searchField, 0, searchField.getHeight());
+                searchField.requestFocusInWindow();
+            }
+        });
+        debounce.setRepeats(false);
 
-        List<HealthRecord> records = currentUser.getHealthRecords();
-        if (records.isEmpty()) {
-            JOptionPane.showMessageDialog(frame, "No health records to print for " + currentUser.getName());
-            return;
-        }
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
 
-        try (PrintWriter writer = new PrintWriter(currentUser.getName() + "_health_records.txt")) {
-            for (HealthRecord record : records) {
-                writer.println(record.getDetails());
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
             }
-            JOptionPane.showMessageDialog(frame, "Health records printed to " + currentUser.getName() + "_health_records.txt");
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(frame, "Error printing health records: " + e.getMessage());
-        }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        fuzzyCheckBox.addActionListener(e -> debounce.restart());
     }
 
-    private void searchMedicines(String query) {
+    private void searchMedicines(String query, boolean fuzzy) {
         if (currentUser == null) {
             JOptionPane.showMessageDialog(frame, "No user selected! Please select a user first.");
             return;
@@ -752,16 +6347,15 @@ public class SmartMedicineReminderApp {
         }
 
         StringBuilder results = new StringBuilder("Search Results:\n");
-        for (Medicine medicine : medicines) {
-            if (medicine.getName() != null && medicine.getName().toLowerCase().contains(query.toLowerCase())) {
-                results.append(medicine.getDetails()).append("\n");
-            }
+        for (MedicineIndex.Hit hit : core.search(query, currentUser, fuzzy, Integer.MAX_VALUE)) {
+            results.append(hit.medicine.getDetails()).append("\n");
         }
 
         if (results.toString().equals("Search Results:\n")) {
             results.append("No matches found.");
         }
 
+        searchPopup.setVisible(false);
         JOptionPane.showMessageDialog(frame, results.toString());
     }
 
@@ -808,45 +6402,67 @@ public class SmartMedicineReminderApp {
         }
     }
 
-    private void saveUserData() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_FILE))) {
-            for (User user : users) {
-                writer.print(user.toFileString());
-            }
+    private void loadUserData() {
+        try {
+            core.load();
         } catch (IOException e) {
-            JOptionPane.showMessageDialog(frame, "Error saving user data: " + e.getMessage());
+            JOptionPane.showMessageDialog(frame, "Error loading user data: " + e.getMessage());
         }
     }
 
-    private void loadUserData() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) return;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(DATA_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.isEmpty() && line.startsWith("User:")) {     
-                    
-                    
-                    List<String> userDataLines = new ArrayList<>();
-                    userDataLines.add(line); 
-                    while ((line = reader.readLine()) != null && !line.equals("EndUser")) {
-                        userDataLines.add(line);
-                    }
-                    userDataLines.add("EndUser"); 
-                    
-                    String userData = String.join("\n", userDataLines);
-                    BufferedReader userReader = new BufferedReader(new StringReader(userData));
-                    User user = User.fromFileString(userReader);
-                    if (user != null) users.add(user);
-                }
+    
+    private static void transfer(boolean importing, File file) throws IOException {
+        ReminderCore core = new ReminderCore(DATA_FILE,
+                e -> System.err.println("Error saving user data: " + e.getMessage()), () -> { });
+        core.load();
+        BulkTransfer transfer = new BulkTransfer(core, System.err::println);
+        try {
+            if (importing) {
+                System.out.println("Imported " + transfer.importFile(file));
+            } else {
+                System.out.println("Exported " + transfer.export(file) + " rows to " + file);
             }
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(frame, "Error loading user data: " + e.getMessage());
+        } finally {
+            core.close();
+        }
+    }
+
+    
+    private static void report(String kindName, File file) throws IOException {
+        ReportEngine.Kind kind = ReportEngine.Kind.valueOf(kindName.toUpperCase(Locale.ROOT).replace('-', '_'));
+        ReportEngine.Format format = ReportEngine.Format.TEXT;
+        for (ReportEngine.Format candidate : ReportEngine.Format.values()) {
+            if (file.getName().toLowerCase(Locale.ROOT).endsWith("." + candidate.extension)) format = candidate;
+        }
+        ReminderCore core = new ReminderCore(DATA_FILE,
+                e -> System.err.println("Error saving user data: " + e.getMessage()), () -> { });
+        core.load();
+        try {
+            long start = System.nanoTime();
+            int written = core.reports().write(file, core.users().snapshot(), kind, format, (done, total) -> { }, () -> false);
+            System.out.println(kind + " for " + written + " users written to " + file + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } finally {
+            core.close();
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--headless".equals(args[0])) {
+            PrintStream out = args.length > 1
+                    ? new PrintStream(new FileOutputStream(args[1], true), true, "UTF-8")
+                    : System.out;
+            new HeadlessDaemon(DATA_FILE, out).run();
+            return;
+        }
+        if (args.length > 1 && ("--import".equals(args[0]) || "--export".equals(args[0]))) {
+            transfer(args[0].equals("--import"), new File(args[1]));
+            return;
+        }
+        if (args.length > 2 && "--report".equals(args[0])) {
+            report(args[1], new File(args[2]));
+            return;
+        }
         SwingUtilities.invokeLater(SmartMedicineReminderApp::new);
     }
 }
@@ -0,0 +1,710 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class SmartMedicineReminderBenchmark {
+    private static final int MEDICINES_PER_USER = 10;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("d/M/yyyy");
+
+    interface SetUp {
+        Operation setUp(Dataset dataset) throws Exception;
+    }
+
+    interface Operation {
+        int run() throws Exception;
+    }
+
+    static class Benchmark {
+        final String name;
+        final SetUp setUp;
+
+        Benchmark(String name, SetUp setUp) {
+            this.name = name;
+            this.setUp = setUp;
+        }
+    }
+
+    static class Dataset {
+        final int medicines;
+        final List<SmartMedicineReminderApp.User> users = new ArrayList<>();
+        final List<String> medicineLines = new ArrayList<>();
+        final String text;
+
+        Dataset(int medicines) {
+            this(medicines, MEDICINES_PER_USER);
+        }
+
+        Dataset(int medicines, int medicinesPerUser) {
+            this.medicines = medicines;
+            String date = LocalDate.now().plusDays(1).format(DATE_FORMAT);
+            int userCount = Math.max(1, (medicines + medicinesPerUser - 1) / medicinesPerUser);
+            int made = 0;
+            for (int u = 0; u < userCount; u++) {
+                SmartMedicineReminderApp.User user = new SmartMedicineReminderApp.User("User" + u, 20 + u % 60);
+                for (int m = 0; m < medicinesPerUser && made < medicines; m++, made++) {
+                    SmartMedicineReminderApp.Medicine medicine = new SmartMedicineReminderApp.Medicine(
+                            "Med" + (made % 5000), String.valueOf(1 + m % 3), (m + 1) * 50 + "mg",
+                            (made % 24) + ":" + String.format("%02d", made % 60), date);
+                    user.addMedicine(medicine);
+                    medicineLines.add(medicine.toFileString());
+                }
+                user.addHealthRecord(new SmartMedicineReminderApp.HealthRecord(date, "120/80", "95", "98"));
+                users.add(user);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (SmartMedicineReminderApp.User user : users) {
+                sb.append(user.toFileString());
+            }
+            this.text = sb.toString();
+        }
+    }
+
+    static class Result {
+        final String benchmark;
+        final int medicines;
+        final long operations;
+        final long items;
+        final long nanos;
+        final long allocatedBytes;
+
+        Result(String benchmark, int medicines, long operations, long items, long nanos, long allocatedBytes) {
+            this.benchmark = benchmark;
+            this.medicines = medicines;
+            this.operations = operations;
+            this.items = items;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        String toJson() {
+            double seconds = nanos / 1e9;
+            return String.format(Locale.ROOT,
+                    "{\"benchmark\":\"%s\",\"medicines\":%d,\"operations\":%d,\"nanosPerOp\":%.1f,"
+                            + "\"opsPerSecond\":%.3f,\"itemsPerSecond\":%.1f,\"bytesPerOp\":%s}",
+                    benchmark, medicines, operations, (double) nanos / operations,
+                    operations / seconds, items / seconds,
+                    allocatedBytes < 0 ? "null" : String.valueOf(allocatedBytes / operations));
+        }
+    }
+
+    static List<Benchmark> benchmarks(File workDir) {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(benchmark("medicine.fromFileString", dataset -> () -> {
+            for (String line : dataset.medicineLines) {
+                SmartMedicineReminderApp.Medicine.fromFileString(line);
+            }
+            return dataset.medicineLines.size();
+        }));
+        benchmarks.add(benchmark("medicine.getDetails", dataset -> () -> {
+            int rendered = 0;
+            for (SmartMedicineReminderApp.User user : dataset.users) {
+                for (SmartMedicineReminderApp.Medicine medicine : user.getMedicines()) {
+                    rendered += medicine.getDetails().isEmpty() ? 0 : 1;
+                }
+            }
+            return rendered;
+        }));
+        benchmarks.add(benchmark("user.toFileString", dataset -> () -> {
+            int length = 0;
+            for (SmartMedicineReminderApp.User user : dataset.users) {
+                length += user.toFileString().length();
+            }
+            return length > 0 ? dataset.medicines : 0;
+        }));
+        benchmarks.add(benchmark("user.fromFileString", dataset -> () -> {
+            SmartMedicineReminderApp.UserDataParser parser =
+                    new SmartMedicineReminderApp.UserDataParser(new StringReader(dataset.text));
+            int count = 0;
+            while (parser.nextUser() != null) {
+                count++;
+            }
+            if (count != dataset.users.size()) {
+                throw new IllegalStateException("Parsed " + count + " of " + dataset.users.size() + " users");
+            }
+            return count;
+        }));
+        benchmarks.add(benchmark("store.text.roundTrip", dataset -> roundTrip(dataset,
+                new File(workDir, "bench_" + dataset.medicines + ".txt"), new SmartMedicineReminderApp.TextSnapshotFormat())));
+        benchmarks.add(benchmark("store.binary.roundTrip", dataset -> roundTrip(dataset,
+                new File(workDir, "bench_" + dataset.medicines + ".bin"), new SmartMedicineReminderApp.BinarySnapshotFormat())));
+        benchmarks.add(benchmark("store.text.load.sequential", dataset -> load(dataset,
+                new File(workDir, "load_" + dataset.medicines + ".txt"), 1)));
+        benchmarks.add(benchmark("store.text.load.parallel", dataset -> load(dataset,
+                new File(workDir, "load_" + dataset.medicines + ".txt"), Runtime.getRuntime().availableProcessors())));
+        benchmarks.add(benchmark("search.prefix", dataset -> {
+            SmartMedicineReminderApp.MedicineIndex index = index(dataset);
+            String[] queries = { "med1", "med42", "med4999", "8:", "med" };
+            return () -> {
+                for (String query : queries) {
+                    index.search(query, null, false, 50);
+                }
+                return queries.length;
+            };
+        }));
+        benchmarks.add(benchmark("search.fuzzy", dataset -> {
+            SmartMedicineReminderApp.MedicineIndex index = index(dataset);
+            String[] queries = { "mde12", "med4l", "mxd300" };
+            return () -> {
+                for (String query : queries) {
+                    index.search(query, null, true, 50);
+                }
+                return queries.length;
+            };
+        }));
+        benchmarks.add(benchmark("reminders.scheduleAndPoll", dataset -> () -> {
+            SmartMedicineReminderApp.ReminderScheduler scheduler = new SmartMedicineReminderApp.ReminderScheduler();
+            for (SmartMedicineReminderApp.User user : dataset.users) {
+                scheduler.scheduleAll(user);
+            }
+            long end = System.currentTimeMillis() + 3L * 24 * 60 * 60 * 1000;
+            int fired = 0;
+            for (long now = System.currentTimeMillis(); now < end; now += 60 * 60 * 1000) {
+                fired += scheduler.pollDue(now).size();
+            }
+            fired += scheduler.pollDue(end).size();
+            return fired;
+        }));
+        return benchmarks;
+    }
+
+    static Benchmark benchmark(String name, SetUp setUp) {
+        return new Benchmark(name, setUp);
+    }
+
+    static Operation roundTrip(Dataset dataset, File file, SmartMedicineReminderApp.SnapshotFormat format) {
+        return () -> {
+            SmartMedicineReminderApp.UserDataStore store =
+                    new SmartMedicineReminderApp.UserDataStore(file.getPath(), format, null);
+            store.compact(dataset.users);
+            store.close();
+
+            SmartMedicineReminderApp.UserDataStore reloaded =
+                    new SmartMedicineReminderApp.UserDataStore(file.getPath(), format, null);
+            int medicines = 0;
+            for (SmartMedicineReminderApp.User user : reloaded.load()) {
+                medicines += user.getMedicines().size();
+            }
+            reloaded.close();
+            return medicines;
+        };
+    }
+
+    static Operation load(Dataset dataset, File file, int parallelism) throws IOException {
+        if (!file.exists()) {
+            Files.write(file.toPath(), dataset.text.getBytes(StandardCharsets.UTF_8));
+        }
+        SmartMedicineReminderApp.TextSnapshotFormat format = new SmartMedicineReminderApp.TextSnapshotFormat(parallelism, 0);
+        return () -> {
+            List<SmartMedicineReminderApp.User> users = new ArrayList<>();
+            format.read(file, users);
+            return users.size() == dataset.users.size() ? dataset.medicines : 0;
+        };
+    }
+
+    static SmartMedicineReminderApp.MedicineIndex index(Dataset dataset) {
+        SmartMedicineReminderApp.MedicineIndex index = new SmartMedicineReminderApp.MedicineIndex();
+        for (SmartMedicineReminderApp.User user : dataset.users) {
+            user.setMedicineListener(index);
+        }
+        return index;
+    }
+
+    static Result measure(Benchmark benchmark, Dataset dataset, long warmupMillis, long measureMillis) throws Exception {
+        Operation operation = benchmark.setUp.setUp(dataset);
+        long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000L;
+        do {
+            operation.run();
+        } while (System.nanoTime() < warmupEnd);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + measureMillis * 1_000_000L;
+        long operations = 0;
+        long items = 0;
+        long now;
+        do {
+            items += operation.run();
+            operations++;
+            now = System.nanoTime();
+        } while (now < end);
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        return new Result(benchmark.name, dataset.medicines, operations, items, now - start, allocated);
+    }
+
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    
+    static String httpLoadTest(Map<String, String> options, File workDir) throws Exception {
+        int medicines = Integer.parseInt(options.getOrDefault("sizes", "10000").split(",")[0].trim());
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        long measureMillis = Long.parseLong(options.getOrDefault("measure", "10000"));
+        Dataset dataset = new Dataset(medicines);
+        File dataFile = new File(workDir, "users_data.txt");
+        Files.write(dataFile.toPath(), dataset.text.getBytes(StandardCharsets.UTF_8));
+
+        SmartMedicineReminderApp.ReminderCore core = new SmartMedicineReminderApp.ReminderCore(
+                dataFile.getPath(), Throwable::printStackTrace, () -> { });
+        core.load();
+        core.start();
+        SmartMedicineReminderApp.ApiServer server = new SmartMedicineReminderApp.ApiServer(core, "127.0.0.1", 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getPort();
+        int userCount = dataset.users.size();
+
+        long end = System.nanoTime() + measureMillis * 1_000_000L;
+        long[][] latencies = new long[concurrency][];
+        int[] counts = new int[concurrency];
+        int[] errors = new int[concurrency];
+        Thread[] clients = new Thread[concurrency];
+        for (int c = 0; c < concurrency; c++) {
+            int client = c;
+            clients[c] = new Thread(() -> {
+                Random random = new Random(client);
+                long[] samples = new long[1 << 16];
+                int count = 0;
+                while (System.nanoTime() < end) {
+                    int user = random.nextInt(userCount);
+                    int kind = random.nextInt(10);
+                    String method = "GET";
+                    String path;
+                    if (kind < 6) {
+                        path = "/users/" + user + "/medicines";
+                    } else if (kind < 8) {
+                        path = "/users/" + user + "/health-records";
+                    } else if (kind < 9) {
+                        path = "/reminders/upcoming?hours=24&limit=20";
+                    } else {
+                        method = "POST";
+                        path = "/users/" + user + "/medicines/0/taken";
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        if (request(base + path, method) != 200) errors[client]++;
+                    } catch (IOException e) {
+                        errors[client]++;
+                    }
+                    if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+                    samples[count++] = System.nanoTime() - start;
+                }
+                latencies[client] = samples;
+                counts[client] = count;
+            }, "load-client-" + c);
+            clients[c].start();
+        }
+        long started = System.nanoTime();
+        for (Thread client : clients) {
+            client.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        server.stop();
+        core.close();
+
+        int total = 0;
+        int failed = 0;
+        for (int c = 0; c < concurrency; c++) {
+            total += counts[c];
+            failed += errors[c];
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (int c = 0; c < concurrency; c++) {
+            System.arraycopy(latencies[c], 0, all, position, counts[c]);
+            position += counts[c];
+        }
+        Arrays.sort(all);
+        return String.format(Locale.ROOT,
+                "{\"benchmark\":\"http.mixed\",\"medicines\":%d,\"concurrency\":%d,\"requests\":%d,\"errors\":%d,"
+                        + "\"requestsPerSecond\":%.1f,\"p50Micros\":%d,\"p99Micros\":%d,\"maxMicros\":%d}",
+                medicines, concurrency, total, failed, total / seconds,
+                percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000, total == 0 ? 0 : all[total - 1] / 1000);
+    }
+
+    
+    static String stressTest(Map<String, String> options, File workDir) throws Exception {
+        int medicines = Integer.parseInt(options.getOrDefault("sizes", "10000").split(",")[0].trim());
+        int writers = Integer.parseInt(options.getOrDefault("writers", "4"));
+        int readers = Integer.parseInt(options.getOrDefault("readers", "4"));
+        long measureMillis = Long.parseLong(options.getOrDefault("measure", "10000"));
+        int medicinesPerUser = Integer.parseInt(options.getOrDefault("medicinesPerUser", String.valueOf(MEDICINES_PER_USER)));
+        Dataset dataset = new Dataset(medicines, medicinesPerUser);
+        File dataFile = new File(workDir, "users_data.txt");
+        Files.write(dataFile.toPath(), dataset.text.getBytes(StandardCharsets.UTF_8));
+        System.setProperty("smr.journal.compactThreshold", options.getOrDefault("compactThreshold", "200"));
+
+        long loadStarted = System.nanoTime();
+        SmartMedicineReminderApp.ReminderCore core = new SmartMedicineReminderApp.ReminderCore(
+                dataFile.getPath(), Throwable::printStackTrace, () -> { });
+        core.load();
+        long loadMillis = (System.nanoTime() - loadStarted) / 1_000_000L;
+        core.start();
+        String date = LocalDate.now().plusDays(2).format(DATE_FORMAT);
+
+        long end = System.nanoTime() + measureMillis * 1_000_000L;
+        AtomicLongArray counts = new AtomicLongArray(3);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(writer);
+                try {
+                    while (System.nanoTime() < end) {
+                        SmartMedicineReminderApp.User user = core.users().byId(random.nextInt(core.users().size()));
+                        List<SmartMedicineReminderApp.Medicine> current = new ArrayList<>(user.getMedicines());
+                        int kind = random.nextInt(4);
+                        if (kind == 0) {
+                            core.addMedicine(user, new SmartMedicineReminderApp.Medicine(
+                                    "Stress" + random.nextInt(1000), "1", "10mg", "7:15", date));
+                        } else if (kind == 1 && !current.isEmpty()) {
+                            core.removeMedicine(user, current.get(random.nextInt(current.size())));
+                        } else if (kind == 2 && !current.isEmpty()) {
+                            SmartMedicineReminderApp.Medicine medicine = current.get(random.nextInt(current.size()));
+                            core.recordOutcome(user, medicine, medicine.nearestOccurrence(System.currentTimeMillis()),
+                                    random.nextBoolean());
+                        } else {
+                            core.addHealthRecord(user, new SmartMedicineReminderApp.HealthRecord(
+                                    date, "120/80", String.valueOf(90 + random.nextInt(20)), "97"));
+                        }
+                        counts.incrementAndGet(0);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-writer-" + w));
+        }
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(1000 + reader);
+                try {
+                    while (System.nanoTime() < end) {
+                        SmartMedicineReminderApp.User user = core.users().byId(random.nextInt(core.users().size()));
+                        if (random.nextBoolean()) {
+                            user.toFileString();
+                        } else {
+                            core.search("stress" + random.nextInt(100), null, false, 20);
+                        }
+                        counts.incrementAndGet(1);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-reader-" + r));
+        }
+        long started = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        List<SmartMedicineReminderApp.User> inMemory = core.users().snapshot();
+        core.close();
+
+        long reloadStarted = System.nanoTime();
+        SmartMedicineReminderApp.UserDataStore reloadedStore = new SmartMedicineReminderApp.UserDataStore(dataFile.getPath());
+        List<SmartMedicineReminderApp.User> reloaded = reloadedStore.load();
+        reloadedStore.close();
+        long reloadMillis = (System.nanoTime() - reloadStarted) / 1_000_000L;
+        int mismatches = Math.abs(reloaded.size() - inMemory.size());
+        for (int i = 0; i < Math.min(reloaded.size(), inMemory.size()); i++) {
+            if (!reloaded.get(i).toFileString().equals(inMemory.get(i).toFileString())) mismatches++;
+        }
+        for (Throwable failure : failures) {
+            failure.printStackTrace();
+        }
+        return String.format(Locale.ROOT,
+                "{\"benchmark\":\"stress\",\"medicines\":%d,\"users\":%d,\"writers\":%d,\"readers\":%d,"
+                        + "\"loadMillis\":%d,\"reloadMillis\":%d,"
+                        + "\"writesPerSecond\":%.1f,\"readsPerSecond\":%.1f,\"failures\":%d,\"mismatchedUsers\":%d}",
+                medicines, dataset.users.size(), writers, readers, loadMillis, reloadMillis,
+                counts.get(0) / seconds, counts.get(1) / seconds, failures.size(), mismatches);
+    }
+
+    static class ManualClock extends Clock {
+        private final AtomicLong millis;
+
+        ManualClock(long millis) {
+            this.millis = new AtomicLong(millis);
+        }
+
+        void advance(long delta) {
+            millis.addAndGet(delta);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    
+    static String latenessTest(Map<String, String> options, File workDir) throws Exception {
+        int medicines = Integer.parseInt(options.getOrDefault("sizes", "10000").split(",")[0].trim());
+        int writers = Integer.parseInt(options.getOrDefault("writers", "2"));
+        long tickMillis = Long.parseLong(options.getOrDefault("tickMillis", "1000"));
+        long stallMillis = Long.parseLong(options.getOrDefault("stallMillis", "600000"));
+        int stallEvery = Integer.parseInt(options.getOrDefault("stallEvery", "3600"));
+        long settleMillis = Long.parseLong(options.getOrDefault("settleMillis", "1000"));
+        System.setProperty("smr.reminders.maxSleepMillis", options.getOrDefault("pollMillis", "2"));
+        Dataset dataset = new Dataset(medicines);
+        File dataFile = new File(workDir, "users_data.txt");
+        Files.write(dataFile.toPath(), dataset.text.getBytes(StandardCharsets.UTF_8));
+
+        long start = LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long end = start + 24 * 3_600_000L;
+        ManualClock clock = new ManualClock(start - 3_600_000L);
+        Semaphore fired = new Semaphore(0);
+        SmartMedicineReminderApp.ReminderCore core = new SmartMedicineReminderApp.ReminderCore(
+                dataFile.getPath(), Throwable::printStackTrace, fired::release, clock);
+        core.load();
+        core.start();
+        long scheduledBy = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        while (core.upcoming(end, 1).isEmpty() && System.nanoTime() < scheduledBy) {
+            Thread.sleep(1);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(writer);
+                try {
+                    while (running.get()) {
+                        SmartMedicineReminderApp.User user = core.users().byId(random.nextInt(core.users().size()));
+                        LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(
+                                clock.millis() + stallMillis + 3_600_000L + random.nextInt(3_600_000)), ZoneId.systemDefault());
+                        if (random.nextBoolean()) {
+                            core.addMedicine(user, new SmartMedicineReminderApp.Medicine("Load" + random.nextInt(1000),
+                                    "1", "10mg", at.getHour() + ":" + String.format("%02d", at.getMinute()),
+                                    at.toLocalDate().format(DATE_FORMAT)));
+                        } else {
+                            core.search("load" + random.nextInt(100), null, false, 20);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "lateness-writer-" + w));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        Set<SmartMedicineReminderApp.Medicine> delivered = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Long> latenesses = new ArrayList<>();
+        List<Long> wakeNanos = new ArrayList<>();
+        long boundViolations = 0;
+        long caughtUp = 0;
+        long unsettled = 0;
+        int ticks = 0;
+        int stalls = 0;
+        while (clock.millis() < end) {
+            long advance = stallEvery > 0 && ++ticks % stallEvery == 0 ? stallMillis : tickMillis;
+            if (advance == stallMillis) stalls++;
+            boolean due = !core.upcoming(clock.millis() + advance, 1).isEmpty();
+            fired.drainPermits();
+            clock.advance(advance);
+            long advancedAt = System.nanoTime();
+            if (due) {
+                if (fired.tryAcquire(settleMillis, TimeUnit.MILLISECONDS)) {
+                    wakeNanos.add(System.nanoTime() - advancedAt);
+                } else {
+                    unsettled++;
+                }
+            }
+            SmartMedicineReminderApp.ReminderEvent event;
+            while ((event = core.events().poll()) != null) {
+                if (event.stage != SmartMedicineReminderApp.ReminderScheduler.Stage.DUE) continue;
+                long lateness = core.reminderDelivered(event);
+                latenesses.add(lateness);
+                delivered.add(event.medicine);
+                if (lateness > advance) boundViolations++;
+                if (lateness > SmartMedicineReminderApp.ReminderScheduler.MISSED_AFTER_MILLIS) caughtUp++;
+            }
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long missing = 0;
+        for (SmartMedicineReminderApp.User user : core.users().snapshot()) {
+            for (SmartMedicineReminderApp.Medicine medicine : user.getMedicines()) {
+                long dueAt = SmartMedicineReminderApp.ReminderScheduler.dueAt(medicine);
+                if (dueAt >= start && dueAt <= clock.millis() && !delivered.contains(medicine)) missing++;
+            }
+        }
+        long usersOverSlo = 0;
+        for (SmartMedicineReminderApp.ReminderLatency.Window window : core.reminderLatency().windows().values()) {
+            if (window.percentile(99) > core.reminderLatency().getSloMillis()) usersOverSlo++;
+        }
+        core.close();
+        for (Throwable failure : failures) {
+            failure.printStackTrace();
+        }
+        long[] sorted = new long[latenesses.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latenesses.get(i);
+        }
+        Arrays.sort(sorted);
+        long[] wakes = new long[wakeNanos.size()];
+        for (int i = 0; i < wakes.length; i++) {
+            wakes[i] = wakeNanos.get(i);
+        }
+        Arrays.sort(wakes);
+        return String.format(Locale.ROOT,
+                "{\"benchmark\":\"reminders.lateness\",\"medicines\":%d,\"writers\":%d,\"ticks\":%d,\"stalls\":%d,"
+                        + "\"deliveries\":%d,\"caughtUp\":%d,\"p50Millis\":%d,\"p99Millis\":%d,\"maxMillis\":%d,"
+                        + "\"wakeP50Millis\":%.3f,\"wakeP99Millis\":%.3f,\"unsettled\":%d,"
+                        + "\"boundViolations\":%d,\"missing\":%d,\"usersOverSlo\":%d,\"failures\":%d}",
+                medicines, writers, ticks, stalls, sorted.length, caughtUp, percentile(sorted, 0.50),
+                percentile(sorted, 0.99), sorted.length == 0 ? 0 : sorted[sorted.length - 1],
+                percentile(wakes, 0.50) / 1e6, percentile(wakes, 0.99) / 1e6, unsettled,
+                boundViolations, missing, usersOverSlo, failures.size());
+    }
+
+    static int request(String url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (method.equals("POST")) {
+            connection.setDoOutput(true);
+            connection.getOutputStream().close();
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            in.readAllBytes();
+            in.close();
+        }
+        return status;
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String mode = options.getOrDefault("mode", "micro");
+        if (!mode.equals("micro")) {
+            File workDir = Files.createTempDirectory("smr-" + mode).toFile();
+            try {
+                String result;
+                if (mode.equals("http")) {
+                    result = httpLoadTest(options, workDir);
+                } else if (mode.equals("stress")) {
+                    result = stressTest(options, workDir);
+                } else if (mode.equals("lateness")) {
+                    result = latenessTest(options, workDir);
+                } else {
+                    throw new IllegalArgumentException("Unknown mode: " + mode);
+                }
+                System.out.println(result);
+            } finally {
+                for (File file : workDir.listFiles()) {
+                    file.delete();
+                }
+                workDir.delete();
+            }
+            return;
+        }
+        String[] sizes = options.getOrDefault("sizes", "10,1000,100000,1000000").split(",");
+        String filter = options.get("filter");
+        long warmupMillis = Long.parseLong(options.getOrDefault("warmup", "1000"));
+        long measureMillis = Long.parseLong(options.getOrDefault("measure", "2000"));
+        String output = options.get("out");
+
+        File workDir = Files.createTempDirectory("smr-bench").toFile();
+        List<Result> results = new ArrayList<>();
+        try {
+            for (String size : sizes) {
+                Dataset dataset = new Dataset(Integer.parseInt(size.trim()));
+                for (Benchmark benchmark : benchmarks(workDir)) {
+                    if (filter != null && !benchmark.name.contains(filter)) continue;
+                    Result result = measure(benchmark, dataset, warmupMillis, measureMillis);
+                    System.err.println(result.toJson());
+                    results.add(result);
+                }
+            }
+        } finally {
+            for (File file : workDir.listFiles()) {
+                file.delete();
+            }
+            workDir.delete();
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"java\":\"").append(System.getProperty("java.version")).append("\",\"results\":[\n");
+        for (int i = 0; i < results.size(); i++) {
+            json.append("  ").append(results.get(i).toJson()).append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        json.append("]}\n");
+        if (output != null) {
+            Files.write(new File(output).toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        } else {
+            System.out.print(json);
+        }
+    }
+}